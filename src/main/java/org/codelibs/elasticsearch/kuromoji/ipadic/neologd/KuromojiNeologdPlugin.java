@@ -2,28 +2,123 @@ package org.codelibs.elasticsearch.kuromoji.ipadic.neologd;
 
 import static java.util.Collections.singletonMap;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action.TransportUnknownWordAction;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action.UnknownWordAction;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary.UserDictionaryStore;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary.UserDictionaryVersionFilter;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiAnalyzerProvider;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiBaseFormFilterFactory;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiEntityTokenizerFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiIterationMarkCharFilterFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiKatakanaStemmerFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiNumberFilterFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiPartOfSpeechFilterFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiReadingFormFilterFactory;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiTokenizerFactory;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.KuromojiTokenizerPool;
 import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.PosConcatenationFilterFactory;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.UserDictionaryLoader;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.rest.RestUnknownWordAction;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.rest.RestUserDictionaryAction;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
 import org.elasticsearch.index.analysis.CharFilterFactory;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule.AnalysisProvider;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
-public class KuromojiNeologdPlugin extends Plugin implements AnalysisPlugin {
+public class KuromojiNeologdPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
+
+    private final UserDictionaryLoader userDictionaryLoader = new UserDictionaryLoader();
+
+    private final UserDictionaryVersionFilter userDictionaryVersionFilter = new UserDictionaryVersionFilter();
+
+    private UserDictionaryStore userDictionaryStore;
+
+    private UnknownWordProfiler unknownWordProfiler;
+
+    private KuromojiTokenizerPool tokenizerPool;
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Arrays.asList(UnknownWordProfiler.CAPACITY_SETTING, KuromojiTokenizerPool.ENABLED_SETTING,
+                KuromojiTokenizerPool.MAX_IDLE_SETTING, KuromojiTokenizerPool.KEEP_ALIVE_SETTING);
+    }
+
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(final Settings settings) {
+        final int size = Math.max(1, Math.min(4, EsExecutors.numberOfProcessors(settings) / 2));
+        return Collections.singletonList(new FixedExecutorBuilder(settings, UserDictionaryLoader.THREAD_POOL_NAME, size, 1000));
+    }
+
+    @Override
+    public Collection<Object> createComponents(final Client client, final ClusterService clusterService, final ThreadPool threadPool,
+            final ResourceWatcherService resourceWatcherService, final ScriptService scriptService,
+            final NamedXContentRegistry xContentRegistry, final Environment environment, final NodeEnvironment nodeEnvironment,
+            final NamedWriteableRegistry namedWriteableRegistry) {
+        userDictionaryStore = new UserDictionaryStore(client, threadPool);
+        userDictionaryLoader.setUserDictionaryStore(userDictionaryStore);
+        userDictionaryVersionFilter.setUserDictionaryStore(userDictionaryStore);
+        userDictionaryLoader.setExecutor(threadPool.executor(UserDictionaryLoader.THREAD_POOL_NAME));
+        unknownWordProfiler = new UnknownWordProfiler(environment.settings());
+        tokenizerPool = new KuromojiTokenizerPool(environment.settings());
+        tokenizerPool.start(threadPool);
+        return Arrays.asList(userDictionaryLoader, userDictionaryStore, unknownWordProfiler, tokenizerPool);
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Collections.singletonList(new ActionHandler<>(UnknownWordAction.INSTANCE, TransportUnknownWordAction.class));
+    }
+
+    @Override
+    public List<ActionFilter> getActionFilters() {
+        return Collections.singletonList(userDictionaryVersionFilter);
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(final Settings settings, final RestController restController,
+            final ClusterSettings clusterSettings, final IndexScopedSettings indexScopedSettings, final SettingsFilter settingsFilter,
+            final IndexNameExpressionResolver indexNameExpressionResolver, final Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(new RestUserDictionaryAction(settings, restController, userDictionaryStore),
+                new RestUnknownWordAction(settings, restController));
+    }
 
     @Override
     public Map<String, AnalysisProvider<CharFilterFactory>> getCharFilters() {
@@ -45,7 +140,10 @@ public class KuromojiNeologdPlugin extends Plugin implements AnalysisPlugin {
     @Override
     public Map<String, AnalysisProvider<TokenizerFactory>> getTokenizers() {
         Map<String, AnalysisProvider<TokenizerFactory>> extra = new HashMap<>();
-        extra.put("kuromoji_ipadic_neologd_tokenizer", KuromojiTokenizerFactory::new);
+        extra.put("kuromoji_ipadic_neologd_tokenizer", (indexSettings, env, name, settings) -> new KuromojiTokenizerFactory(indexSettings,
+                env, name, settings, userDictionaryLoader, unknownWordProfiler, tokenizerPool));
+        extra.put("kuromoji_ipadic_neologd_entity_tokenizer", (indexSettings, env, name, settings) -> new KuromojiEntityTokenizerFactory(
+                indexSettings, env, name, settings, userDictionaryLoader));
         return extra;
     }
 
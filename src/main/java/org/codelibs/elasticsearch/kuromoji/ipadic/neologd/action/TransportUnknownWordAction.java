@@ -0,0 +1,83 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Sends the whole {@link UnknownWordProfiler} of each node, so that the counts are merged on the coordinating node.
+ */
+public class TransportUnknownWordAction extends TransportNodesAction<UnknownWordNodesRequest, UnknownWordNodesResponse,
+        TransportUnknownWordAction.UnknownWordNodeRequest, UnknownWordNodeResponse> {
+
+    private final UnknownWordProfiler unknownWordProfiler;
+
+    @Inject
+    public TransportUnknownWordAction(final ThreadPool threadPool, final ClusterService clusterService,
+            final TransportService transportService, final ActionFilters actionFilters, final UnknownWordProfiler unknownWordProfiler) {
+        super(UnknownWordAction.NAME, threadPool, clusterService, transportService, actionFilters, UnknownWordNodesRequest::new,
+                UnknownWordNodeRequest::new, ThreadPool.Names.MANAGEMENT, UnknownWordNodeResponse.class);
+        this.unknownWordProfiler = unknownWordProfiler;
+    }
+
+    @Override
+    protected UnknownWordNodesResponse newResponse(final UnknownWordNodesRequest request, final List<UnknownWordNodeResponse> responses,
+            final List<FailedNodeException> failures) {
+        return new UnknownWordNodesResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected UnknownWordNodeRequest newNodeRequest(final String nodeId, final UnknownWordNodesRequest request) {
+        return new UnknownWordNodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected UnknownWordNodeResponse newNodeResponse() {
+        return new UnknownWordNodeResponse();
+    }
+
+    @Override
+    protected UnknownWordNodeResponse nodeOperation(final UnknownWordNodeRequest request) {
+        final UnknownWordProfiler.Report report = unknownWordProfiler.getReport(Integer.MAX_VALUE);
+        if (request.clear) {
+            unknownWordProfiler.clear();
+        }
+        return new UnknownWordNodeResponse(clusterService.localNode(), report);
+    }
+
+    public static class UnknownWordNodeRequest extends BaseNodeRequest {
+
+        private boolean clear;
+
+        public UnknownWordNodeRequest() {
+        }
+
+        UnknownWordNodeRequest(final String nodeId, final UnknownWordNodesRequest request) {
+            super(nodeId);
+            clear = request.clear();
+        }
+
+        @Override
+        public void readFrom(final StreamInput in) throws IOException {
+            super.readFrom(in);
+            clear = in.readBoolean();
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeBoolean(clear);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action;
+
+import org.elasticsearch.action.Action;
+
+/**
+ * Collects the unknown words counted on each node, or clears them.
+ */
+public class UnknownWordAction extends Action<UnknownWordNodesResponse> {
+
+    public static final UnknownWordAction INSTANCE = new UnknownWordAction();
+
+    public static final String NAME = "cluster:admin/kuromoji_ipadic_neologd/unknown_words";
+
+    private UnknownWordAction() {
+        super(NAME);
+    }
+
+    @Override
+    public UnknownWordNodesResponse newResponse() {
+        return new UnknownWordNodesResponse();
+    }
+}
@@ -0,0 +1,44 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler.Report;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class UnknownWordNodeResponse extends BaseNodeResponse {
+
+    private Report report;
+
+    public UnknownWordNodeResponse() {
+    }
+
+    public UnknownWordNodeResponse(final DiscoveryNode node, final Report report) {
+        super(node);
+        this.report = report;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public static UnknownWordNodeResponse readNodeResponse(final StreamInput in) throws IOException {
+        final UnknownWordNodeResponse response = new UnknownWordNodeResponse();
+        response.readFrom(in);
+        return response;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        report = new Report(in);
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        report.writeTo(out);
+    }
+}
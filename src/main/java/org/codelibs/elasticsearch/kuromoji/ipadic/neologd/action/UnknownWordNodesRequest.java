@@ -0,0 +1,49 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class UnknownWordNodesRequest extends BaseNodesRequest<UnknownWordNodesRequest> {
+
+    private boolean clear;
+
+    public UnknownWordNodesRequest() {
+    }
+
+    public UnknownWordNodesRequest(final String... nodesIds) {
+        super(nodesIds);
+    }
+
+    /**
+     * Clears the unknown words on each node after they are collected.
+     */
+    public UnknownWordNodesRequest clear(final boolean clear) {
+        this.clear = clear;
+        return this;
+    }
+
+    public boolean clear() {
+        return clear;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        return null;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        clear = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(clear);
+    }
+}
@@ -0,0 +1,41 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler.Report;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class UnknownWordNodesResponse extends BaseNodesResponse<UnknownWordNodeResponse> {
+
+    public UnknownWordNodesResponse() {
+    }
+
+    public UnknownWordNodesResponse(final ClusterName clusterName, final List<UnknownWordNodeResponse> nodes,
+            final List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    /**
+     * Returns the most frequent unknown words in the cluster.
+     */
+    public Report getReport(final int size) {
+        return UnknownWordProfiler.merge(getNodes().stream().map(UnknownWordNodeResponse::getReport).collect(Collectors.toList()), size);
+    }
+
+    @Override
+    protected List<UnknownWordNodeResponse> readNodesFrom(final StreamInput in) throws IOException {
+        return in.readList(UnknownWordNodeResponse::readNodeResponse);
+    }
+
+    @Override
+    protected void writeNodesTo(final StreamOutput out, final List<UnknownWordNodeResponse> nodes) throws IOException {
+        out.writeStreamableList(nodes);
+    }
+}
@@ -0,0 +1,61 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Metadata of a user dictionary version stored in {@link UserDictionaryStore#INDEX_NAME}.
+ */
+public class StoredDictionary implements ToXContentObject {
+
+    private final String name;
+
+    private final long version;
+
+    private final String checksum;
+
+    private final int size;
+
+    private final long timestamp;
+
+    public StoredDictionary(final String name, final long version, final String checksum, final int size, final long timestamp) {
+        this.name = name;
+        this.version = version;
+        this.checksum = checksum;
+        this.size = size;
+        this.timestamp = timestamp;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder, final Params params) throws IOException {
+        builder.startObject();
+        builder.field(UserDictionaryStore.NAME_FIELD, name);
+        builder.field(UserDictionaryStore.VERSION_FIELD, version);
+        builder.field(UserDictionaryStore.CHECKSUM_FIELD, checksum);
+        builder.field(UserDictionaryStore.SIZE_FIELD, size);
+        builder.field(UserDictionaryStore.TIMESTAMP_FIELD, timestamp);
+        return builder.endObject();
+    }
+}
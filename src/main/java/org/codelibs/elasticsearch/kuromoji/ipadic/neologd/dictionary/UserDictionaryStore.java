@@ -0,0 +1,258 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.UserDictionaryLoader;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRunnable;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Stores user dictionaries in {@link #INDEX_NAME} so that they are shared by all nodes.
+ * <p>
+ * Each upload is validated by building it once, and is saved as an immutable document
+ * <code>name@version</code> which holds the dictionary as a checksummed binary blob.
+ * The document <code>name</code> points to the latest version, and it is moved only after the version has been written,
+ * so that it never refers to a missing version.
+ * Built dictionaries are cached on each node by name and version.
+ */
+public class UserDictionaryStore {
+
+    private static final Logger logger = LogManager.getLogger(UserDictionaryStore.class);
+
+    public static final String INDEX_NAME = ".kuromoji_ipadic_neologd_dictionaries";
+
+    public static final String NAME_FIELD = "name";
+
+    public static final String VERSION_FIELD = "version";
+
+    public static final String CHECKSUM_FIELD = "checksum";
+
+    public static final String SIZE_FIELD = "size";
+
+    public static final String TIMESTAMP_FIELD = "timestamp";
+
+    public static final String BLOB_FIELD = "blob";
+
+    private static final String TYPE = "_doc";
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9][a-z0-9_\\-\\.]*");
+
+    private static final TimeValue REQUEST_TIMEOUT = TimeValue.timeValueSeconds(30);
+
+    private final Client client;
+
+    private final ThreadPool threadPool;
+
+    private final Cache<String, UserDictionary> cache =
+            CacheBuilder.<String, UserDictionary> builder().setExpireAfterAccess(TimeValue.timeValueHours(1)).build();
+
+    public UserDictionaryStore(final Client client, final ThreadPool threadPool) {
+        this.client = client;
+        this.threadPool = threadPool;
+    }
+
+    public static void validateName(final String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("invalid kuromoji user dictionary name [" + name + "]");
+        }
+    }
+
+    /**
+     * Builds the rules to validate them, and stores them as a new version.
+     */
+    public void put(final String name, final List<String> rules, final ActionListener<StoredDictionary> listener) {
+        validateName(name);
+        threadPool.executor(UserDictionaryLoader.THREAD_POOL_NAME).execute(new ActionRunnable<StoredDictionary>(listener) {
+            @Override
+            protected void doRun() throws Exception {
+                final String content = String.join("\n", rules);
+                final UserDictionary userDictionary = open(name, content);
+                final byte[] blob = content.getBytes(StandardCharsets.UTF_8);
+                final String checksum = MessageDigests.toHexString(MessageDigests.sha256().digest(blob));
+                final long timestamp = System.currentTimeMillis();
+                final Map<String, Object> source = new HashMap<>();
+                source.put(NAME_FIELD, name);
+                source.put(CHECKSUM_FIELD, checksum);
+                source.put(SIZE_FIELD, blob.length);
+                source.put(TIMESTAMP_FIELD, timestamp);
+                createIndexIfNeeded(ActionListener.wrap(v -> {
+                    client.prepareGet(INDEX_NAME, TYPE, name).setFetchSource(false).execute(ActionListener.wrap(latest -> {
+                        final long version = latest.isExists() ? latest.getVersion() + 1 : 1;
+                        createVersion(name, version, source, blob, ActionListener.wrap(created -> {
+                            cache.put(toId(name, created), userDictionary);
+                            logger.info("Stored kuromoji user dictionary {}", toId(name, created));
+                            listener.onResponse(new StoredDictionary(name, created, checksum, blob.length, timestamp));
+                        }, listener::onFailure));
+                    }, listener::onFailure));
+                }, listener::onFailure));
+            }
+        });
+    }
+
+    /**
+     * Creates the immutable document of the version, and then moves the pointer to it.
+     * If the version is taken by a concurrent upload or by an upload which failed to move the pointer,
+     * the next version is tried.
+     */
+    private void createVersion(final String name, final long version, final Map<String, Object> source, final byte[] blob,
+            final ActionListener<Long> listener) {
+        final Map<String, Object> versionSource = new HashMap<>(source);
+        versionSource.put(VERSION_FIELD, version);
+        versionSource.put(BLOB_FIELD, blob);
+        client.prepareIndex(INDEX_NAME, TYPE, toId(name, version)).setSource(versionSource).setOpType(DocWriteRequest.OpType.CREATE)
+                .execute(ActionListener.wrap(r -> {
+                    final Map<String, Object> pointerSource = new HashMap<>(source);
+                    pointerSource.put(VERSION_FIELD, version);
+                    // the external version keeps the pointer from moving back to an older upload
+                    client.prepareIndex(INDEX_NAME, TYPE, name).setSource(pointerSource).setVersion(version)
+                            .setVersionType(VersionType.EXTERNAL).execute(ActionListener.wrap(p -> listener.onResponse(version), e -> {
+                                if (ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException) {
+                                    // a newer version has been published
+                                    listener.onResponse(version);
+                                } else {
+                                    listener.onFailure(e);
+                                }
+                            }));
+                }, e -> {
+                    if (ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException) {
+                        createVersion(name, version + 1, source, blob, listener);
+                    } else {
+                        listener.onFailure(e);
+                    }
+                }));
+    }
+
+    /**
+     * Returns the metadata of the given version, or the latest version if version is negative.
+     */
+    public void info(final String name, final long version, final ActionListener<StoredDictionary> listener) {
+        validateName(name);
+        final String id = version < 0 ? name : toId(name, version);
+        client.prepareGet(INDEX_NAME, TYPE, id).setFetchSource(null, BLOB_FIELD).execute(ActionListener.wrap(response -> {
+            if (!response.isExists()) {
+                listener.onFailure(notFound(name, version));
+                return;
+            }
+            final Map<String, Object> source = response.getSourceAsMap();
+            listener.onResponse(new StoredDictionary(name, version < 0 ? response.getVersion() : version,
+                    (String) source.get(CHECKSUM_FIELD), ((Number) source.get(SIZE_FIELD)).intValue(),
+                    ((Number) source.get(TIMESTAMP_FIELD)).longValue()));
+        }, e -> {
+            if (ExceptionsHelper.unwrapCause(e) instanceof IndexNotFoundException) {
+                listener.onFailure(notFound(name, version));
+            } else {
+                listener.onFailure(e);
+            }
+        }));
+    }
+
+    /**
+     * Fetches and builds the given version.
+     * This method blocks, so it must not be called on a transport or cluster state thread.
+     */
+    public UserDictionary load(final String name, final long version) {
+        try {
+            final String id = toId(name, version);
+            final UserDictionary cached = cache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+
+            // versions are immutable and the index is replicated to all nodes, so the local copy is read
+            final GetResponse response = client.prepareGet(INDEX_NAME, TYPE, id).setPreference("_local").get(REQUEST_TIMEOUT);
+            if (!response.isExists()) {
+                throw notFound(name, version);
+            }
+            final Map<String, Object> source = response.getSourceAsMap();
+            final byte[] blob = Base64.getDecoder().decode((String) source.get(BLOB_FIELD));
+            final String checksum = MessageDigests.toHexString(MessageDigests.sha256().digest(blob));
+            if (!checksum.equals(source.get(CHECKSUM_FIELD))) {
+                throw new ElasticsearchException("checksum mismatch for kuromoji user dictionary [{}]: expected [{}] but was [{}]", id,
+                        source.get(CHECKSUM_FIELD), checksum);
+            }
+            final UserDictionary userDictionary = open(id, new String(blob, StandardCharsets.UTF_8));
+            cache.put(id, userDictionary);
+            return userDictionary;
+        } catch (final IndexNotFoundException e) {
+            throw notFound(name, version);
+        }
+    }
+
+    private void createIndexIfNeeded(final ActionListener<Void> listener) throws IOException {
+        final XContentBuilder mapping = XContentFactory.jsonBuilder()//
+                .startObject()//
+                .startObject(TYPE)//
+                .field("dynamic", "strict")//
+                .startObject("properties")//
+                .startObject(NAME_FIELD).field("type", "keyword").endObject()//
+                .startObject(VERSION_FIELD).field("type", "long").endObject()//
+                .startObject(CHECKSUM_FIELD).field("type", "keyword").endObject()//
+                .startObject(SIZE_FIELD).field("type", "integer").endObject()//
+                .startObject(TIMESTAMP_FIELD).field("type", "date").field("format", "epoch_millis").endObject()//
+                .startObject(BLOB_FIELD).field("type", "binary").endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject();
+        client.admin().indices().prepareCreate(INDEX_NAME)
+                .setSettings(Settings.builder().put("index.number_of_shards", 1).put("index.auto_expand_replicas", "0-all"))
+                .addMapping(TYPE, mapping).execute(ActionListener.wrap(r -> listener.onResponse(null), e -> {
+                    if (ExceptionsHelper.unwrapCause(e) instanceof ResourceAlreadyExistsException) {
+                        listener.onResponse(null);
+                    } else {
+                        listener.onFailure(e);
+                    }
+                }));
+    }
+
+    private static UserDictionary open(final String name, final String content) {
+        final UserDictionary userDictionary;
+        try {
+            userDictionary = UserDictionary.open(new StringReader(content));
+        } catch (final IOException | RuntimeException e) {
+            throw new IllegalArgumentException("failed to parse kuromoji user dictionary [" + name + "]", e);
+        }
+        if (userDictionary == null) {
+            throw new IllegalArgumentException("kuromoji user dictionary [" + name + "] has no entries");
+        }
+        return userDictionary;
+    }
+
+    private static ResourceNotFoundException notFound(final String name, final long version) {
+        if (version < 0) {
+            return new ResourceNotFoundException("kuromoji user dictionary [{}] is not found", name);
+        }
+        return new ResourceNotFoundException("kuromoji user dictionary [{}] is not found", toId(name, version));
+    }
+
+    public static String toId(final String name, final long version) {
+        return name + "@" + version;
+    }
+}
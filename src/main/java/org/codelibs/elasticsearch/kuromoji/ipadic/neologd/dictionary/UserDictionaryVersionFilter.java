@@ -0,0 +1,101 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis.UserDictionaryLoader;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexAction;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.action.support.ActionFilterChain;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.tasks.Task;
+
+/**
+ * Resolves the latest version of stored user dictionaries when an index is created,
+ * and saves it to the index settings so that all nodes analyze with the same version.
+ * Index creation fails if a dictionary or the specified version does not exist,
+ * because tokenizer factories build dictionaries asynchronously and cannot report it.
+ */
+public class UserDictionaryVersionFilter implements ActionFilter {
+
+    private static final Logger logger = LogManager.getLogger(UserDictionaryVersionFilter.class);
+
+    private static final String TOKENIZER_PREFIX = IndexMetaData.INDEX_SETTING_PREFIX + "analysis.tokenizer.";
+
+    private volatile UserDictionaryStore userDictionaryStore;
+
+    public void setUserDictionaryStore(final UserDictionaryStore userDictionaryStore) {
+        this.userDictionaryStore = userDictionaryStore;
+    }
+
+    @Override
+    public int order() {
+        return 0;
+    }
+
+    @Override
+    public <Request extends ActionRequest, Response extends ActionResponse> void apply(final Task task, final String action,
+            final Request request, final ActionListener<Response> listener, final ActionFilterChain<Request, Response> chain) {
+        if (!CreateIndexAction.NAME.equals(action)) {
+            chain.proceed(task, action, request, listener);
+            return;
+        }
+
+        final CreateIndexRequest createIndexRequest = (CreateIndexRequest) request;
+        final Settings settings =
+                Settings.builder().put(createIndexRequest.settings()).normalizePrefix(IndexMetaData.INDEX_SETTING_PREFIX).build();
+        final List<String> tokenizers = new ArrayList<>();
+        for (final Map.Entry<String, Settings> entry : settings.getGroups(TOKENIZER_PREFIX).entrySet()) {
+            if (entry.getValue().get(UserDictionaryLoader.USER_DICT_NAME_OPTION) != null) {
+                tokenizers.add(entry.getKey());
+            }
+        }
+        if (tokenizers.isEmpty()) {
+            chain.proceed(task, action, request, listener);
+            return;
+        }
+
+        final UserDictionaryStore store = userDictionaryStore;
+        if (store == null) {
+            listener.onFailure(new IllegalStateException("kuromoji user dictionary store is not initialized"));
+            return;
+        }
+        resolveVersions(store, settings, tokenizers.iterator(), Settings.builder().put(settings), ActionListener.wrap(resolved -> {
+            createIndexRequest.settings(resolved);
+            chain.proceed(task, action, request, listener);
+        }, listener::onFailure));
+    }
+
+    private void resolveVersions(final UserDictionaryStore store, final Settings settings, final Iterator<String> tokenizers,
+            final Settings.Builder builder, final ActionListener<Settings> listener) {
+        if (!tokenizers.hasNext()) {
+            listener.onResponse(builder.build());
+            return;
+        }
+        final String tokenizer = tokenizers.next();
+        final String prefix = TOKENIZER_PREFIX + tokenizer + ".";
+        final String name = settings.get(prefix + UserDictionaryLoader.USER_DICT_NAME_OPTION);
+        try {
+            final long version = settings.getAsLong(prefix + UserDictionaryLoader.USER_DICT_VERSION_OPTION, -1L);
+            store.info(name, version, ActionListener.wrap(dictionary -> {
+                if (version < 0) {
+                    logger.debug("Resolved kuromoji user dictionary {} for tokenizer {}",
+                            UserDictionaryStore.toId(name, dictionary.getVersion()), tokenizer);
+                    builder.put(prefix + UserDictionaryLoader.USER_DICT_VERSION_OPTION, dictionary.getVersion());
+                }
+                resolveVersions(store, settings, tokenizers, builder, listener);
+            }, listener::onFailure));
+        } catch (final Exception e) {
+            listener.onFailure(e);
+        }
+    }
+}
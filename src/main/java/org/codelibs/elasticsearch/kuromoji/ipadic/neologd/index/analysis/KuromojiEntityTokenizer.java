@@ -0,0 +1,172 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.FST;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.TokenInfoDictionary;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.TokenInfoFST;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+
+/**
+ * Tokenizer which extracts named entities only, without building a Viterbi lattice.
+ * <p>
+ * The input is scanned from left to right with the dictionary FSTs. At each position, the longest word which is
+ * a user dictionary entry or whose part-of-speech starts with one of the tags is emitted, and the scan continues after it.
+ * If no such word starts at the position, the scan skips the longest dictionary word there, or one character if there is none,
+ * so that it does not start inside a common word.
+ * The part-of-speech is set to the type attribute.
+ */
+public final class KuromojiEntityTokenizer extends Tokenizer {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+    private final TokenInfoDictionary dictionary;
+
+    private final TokenInfoFST fst;
+
+    private final FST.BytesReader fstReader;
+
+    private final UserDictionary userDictionary;
+
+    private final TokenInfoFST userFst;
+
+    private final FST.BytesReader userFstReader;
+
+    private final String[] tags;
+
+    private final FST.Arc<Long> arc = new FST.Arc<>();
+
+    private final IntsRef wordIdRef = new IntsRef();
+
+    private char[] buffer = new char[1024];
+
+    private int length;
+
+    private int pos;
+
+    public KuromojiEntityTokenizer(final UserDictionary userDictionary, final String[] tags) {
+        dictionary = TokenInfoDictionary.getInstance();
+        fst = dictionary.getFST();
+        fstReader = fst.getBytesReader();
+        this.userDictionary = userDictionary;
+        if (userDictionary != null) {
+            userFst = userDictionary.getFST();
+            userFstReader = userFst.getBytesReader();
+        } else {
+            userFst = null;
+            userFstReader = null;
+        }
+        this.tags = tags;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        while (pos < length) {
+            final int start = pos;
+
+            int userLength = 0;
+            int userOutput = 0;
+            if (userFst != null) {
+                userFst.getFirstArc(arc);
+                int output = 0;
+                for (int i = start; i < length; i++) {
+                    if (userFst.findTargetArc(buffer[i], arc, arc, i == start, userFstReader) == null) {
+                        break;
+                    }
+                    output += arc.output.intValue();
+                    if (arc.isFinal()) {
+                        userLength = i - start + 1;
+                        userOutput = output + arc.nextFinalOutput.intValue();
+                    }
+                }
+            }
+
+            int wordLength = 0;
+            int entityLength = 0;
+            int entityWordId = -1;
+            fst.getFirstArc(arc);
+            int output = 0;
+            for (int i = start; i < length; i++) {
+                if (fst.findTargetArc(buffer[i], arc, arc, i == start, fstReader) == null) {
+                    break;
+                }
+                output += arc.output.intValue();
+                if (arc.isFinal()) {
+                    wordLength = i - start + 1;
+                    // longer words which are not entities do not hide a shorter entity
+                    final int wordId = findEntity(output + arc.nextFinalOutput.intValue());
+                    if (wordId >= 0) {
+                        entityLength = i - start + 1;
+                        entityWordId = wordId;
+                    }
+                }
+            }
+
+            if (userLength > 0 && userLength >= entityLength) {
+                // user dictionary entries take precedence as in JapaneseTokenizer
+                final int wordId = userDictionary.lookupSegmentation(userOutput)[0];
+                setToken(start, userLength, userDictionary.getPartOfSpeech(wordId));
+                return true;
+            } else if (entityWordId >= 0) {
+                setToken(start, entityLength, dictionary.getPartOfSpeech(entityWordId));
+                return true;
+            }
+            // skip the word which is not an entity, e.g. 米 in お米 is not scanned as a place
+            pos += Math.max(1, wordLength);
+        }
+        return false;
+    }
+
+    private int findEntity(final int sourceId) {
+        dictionary.lookupWordIds(sourceId, wordIdRef);
+        for (int i = 0; i < wordIdRef.length; i++) {
+            final int wordId = wordIdRef.ints[wordIdRef.offset + i];
+            final String partOfSpeech = dictionary.getPartOfSpeech(wordId);
+            for (final String tag : tags) {
+                if (partOfSpeech.startsWith(tag)) {
+                    return wordId;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void setToken(final int start, final int wordLength, final String partOfSpeech) {
+        termAtt.copyBuffer(buffer, start, wordLength);
+        offsetAtt.setOffset(correctOffset(start), correctOffset(start + wordLength));
+        typeAtt.setType(partOfSpeech);
+        pos = start + wordLength;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        length = 0;
+        pos = 0;
+        int read;
+        while ((read = input.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = ArrayUtil.grow(buffer, length + 1);
+            }
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        final int finalOffset = correctOffset(length);
+        offsetAtt.setOffset(finalOffset, finalOffset);
+    }
+}
@@ -0,0 +1,40 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.util.List;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
+import org.elasticsearch.index.analysis.Analysis;
+
+public class KuromojiEntityTokenizerFactory extends AbstractTokenizerFactory {
+
+    private static final String USER_DICT_TIMEOUT = "user_dictionary_timeout";
+
+    private static final String DEFAULT_TAG = "名詞-固有名詞";
+
+    private final UserDictionaryHandle userDictionaryHandle;
+
+    private final String[] tags;
+
+    public KuromojiEntityTokenizerFactory(final IndexSettings indexSettings, final Environment env, final String name,
+            final Settings settings, final UserDictionaryLoader userDictionaryLoader) {
+        super(indexSettings, settings);
+        userDictionaryHandle = new UserDictionaryHandle(userDictionaryLoader, env, settings,
+                settings.getAsTime(USER_DICT_TIMEOUT, TimeValue.timeValueSeconds(60)));
+        final List<String> tagList = Analysis.getWordList(env, settings, "tags");
+        if (tagList != null) {
+            tags = tagList.toArray(new String[tagList.size()]);
+        } else {
+            tags = new String[] { DEFAULT_TAG };
+        }
+    }
+
+    @Override
+    public Tokenizer create() {
+        return new KuromojiEntityTokenizer(userDictionaryHandle.get(), tags);
+    }
+}
@@ -0,0 +1,400 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.lucene.analysis.CharFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.util.Attribute;
+import org.apache.lucene.util.AttributeFactory;
+import org.apache.lucene.util.AttributeImpl;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr.AnalyzeEventHandle;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr.JfrEvents;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.tokenattributes.ReadingAttribute;
+
+/**
+ * Tokenizer which delegates to {@link JapaneseTokenizer}.
+ * The attribute instances are shared with the delegate, so tokens are not copied.
+ * <p>
+ * If a {@link KuromojiTokenizerPool} is given, the delegate is borrowed from the pool for each input
+ * and its attributes are copied to this tokenizer instead.
+ * <p>
+ * If segmentation reuse is enabled, the tokens of the last input are kept per thread,
+ * and a tokenizer with the same configuration replays them for the same input instead of segmenting it again.
+ * This is effective for multi-fields which analyze the same text with different token filters.
+ * They are dropped when a different input is analyzed, and long inputs are not kept.
+ */
+public final class KuromojiTokenizer extends Tokenizer {
+
+    private static final int MAX_REUSABLE_LENGTH = 1 << 12;
+
+    private static final ThreadLocal<Segmentation> LAST_SEGMENTATION = new ThreadLocal<>();
+
+    // shared by all tokenizers of a thread, because a tokenizer is kept per index and analyzer on each thread
+    private static final ThreadLocal<char[]> READ_BUFFER = ThreadLocal.withInitial(() -> new char[MAX_REUSABLE_LENGTH + 1]);
+
+    private final List<AttributeImpl> tokenizerAttributes = new ArrayList<>();
+
+    private final KuromojiTokenizerConfig config;
+
+    private final KuromojiTokenizerPool pool;
+
+    private JapaneseTokenizer tokenizer;
+
+    private AttributeImpl[] pooledAttributes;
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+    private final ReadingAttribute readingAtt = addAttribute(ReadingAttribute.class);
+
+    private final String indexName;
+
+    private final String tokenizerName;
+
+    private AnalyzeEventHandle event;
+
+    private int tokenCount;
+
+    private int unknownWordCount;
+
+    private UnknownWordProfiler unknownWordProfiler;
+
+    private double unknownWordSampleRate;
+
+    private boolean sampling;
+
+    private String previousTerm;
+
+    private String unknownWord;
+
+    private String termBeforeUnknownWord;
+
+    private boolean reuseSegmentation;
+
+    private Segmentation recording;
+
+    private Segmentation replaying;
+
+    private int replayIndex;
+
+    public KuromojiTokenizer(final KuromojiTokenizerConfig config, final KuromojiTokenizerPool pool, final String indexName,
+            final String tokenizerName) {
+        this.config = config;
+        this.pool = pool;
+        this.indexName = indexName;
+        this.tokenizerName = tokenizerName;
+        if (pool == null) {
+            tokenizer = config.newTokenizer(new SharedAttributeFactory());
+        } else {
+            // register the same attributes as the pooled tokenizers
+            final JapaneseTokenizer template = pool.borrow(config);
+            for (final Iterator<AttributeImpl> it = template.getAttributeImplsIterator(); it.hasNext();) {
+                final AttributeImpl attImpl = it.next();
+                final Iterator<Class<? extends Attribute>> classes = template.getAttributeClassesIterator();
+                while (classes.hasNext()) {
+                    final Class<? extends Attribute> attClass = classes.next();
+                    if (attClass.isInstance(attImpl)) {
+                        addTokenizerAttribute((AttributeImpl) addAttribute(attClass));
+                        break;
+                    }
+                }
+            }
+            pool.release(config, template);
+        }
+    }
+
+    public void setUnknownWordProfiler(final UnknownWordProfiler unknownWordProfiler, final double sampleRate) {
+        this.unknownWordProfiler = unknownWordProfiler;
+        this.unknownWordSampleRate = sampleRate;
+    }
+
+    /**
+     * Enables the reuse of segmentation between tokenizers which have the same configuration.
+     */
+    public void setSegmentationReuse(final boolean reuseSegmentation) {
+        this.reuseSegmentation = reuseSegmentation;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        // the delegate clears its own attributes only, so reset the ones added by token filters too
+        clearAttributes();
+        if (replaying != null) {
+            if (replayIndex >= replaying.tokens.size()) {
+                return false;
+            }
+            final AttributeImpl[] token = replaying.tokens.get(replayIndex++);
+            for (int i = 0; i < token.length; i++) {
+                token[i].copyTo(tokenizerAttributes.get(i));
+            }
+        } else {
+            if (!tokenizer.incrementToken()) {
+                if (recording != null) {
+                    recording.complete = true;
+                }
+                return false;
+            }
+            if (pooledAttributes != null) {
+                copyPooledAttributes();
+            }
+            if (recording != null) {
+                final AttributeImpl[] token = new AttributeImpl[tokenizerAttributes.size()];
+                for (int i = 0; i < token.length; i++) {
+                    token[i] = tokenizerAttributes.get(i).clone();
+                }
+                recording.tokens.add(token);
+            }
+        }
+        if (event != null) {
+            tokenCount++;
+            // only unknown-word processing produces tokens without a reading
+            if (readingAtt.getReading() == null) {
+                unknownWordCount++;
+            }
+        }
+        if (sampling) {
+            profile();
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        recording = null;
+        replaying = null;
+        if (reuseSegmentation && !(input instanceof CharFilter)) {
+            // offsets of char filters cannot be replayed, so only plain inputs are reused
+            final char[] readBuffer = READ_BUFFER.get();
+            final int length = readInput(readBuffer);
+            if (length > MAX_REUSABLE_LENGTH) {
+                // too long to keep, so tokenize it without copying the rest of the input,
+                // but the prefix is copied since the buffer is reused by the next tokenizer of this thread
+                LAST_SEGMENTATION.remove();
+                resetTokenizer(new PrefixedReader(Arrays.copyOf(readBuffer, length), length, input));
+            } else {
+                final String text = new String(readBuffer, 0, length);
+                final Segmentation last = LAST_SEGMENTATION.get();
+                if (last != null && last.config.equals(config) && last.text.equals(text)) {
+                    replaying = last;
+                    replayIndex = 0;
+                } else {
+                    LAST_SEGMENTATION.remove();
+                    recording = new Segmentation(config, text);
+                    resetTokenizer(new StringReader(text));
+                }
+            }
+        } else {
+            resetTokenizer(input);
+        }
+        event = JfrEvents.beginAnalyze();
+        tokenCount = 0;
+        unknownWordCount = 0;
+        // replayed tokens have been sampled when they were segmented, so they are not counted again
+        sampling = unknownWordSampleRate > 0 && replaying == null && ThreadLocalRandom.current().nextDouble() < unknownWordSampleRate;
+        if (sampling) {
+            unknownWordProfiler.onSample();
+            previousTerm = "";
+            unknownWord = null;
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        if (replaying != null) {
+            offsetAtt.setOffset(replaying.finalOffset, replaying.finalOffset);
+        } else {
+            tokenizer.end();
+            if (pooledAttributes != null) {
+                copyPooledAttributes();
+            }
+            // consumers such as the limit filter may stop early, and such tokens must not be replayed
+            if (recording != null && recording.complete) {
+                recording.finalOffset = offsetAtt.endOffset();
+                LAST_SEGMENTATION.set(recording);
+            }
+            recording = null;
+        }
+        if (event != null) {
+            commitEvent(offsetAtt.endOffset());
+        }
+        if (sampling && unknownWord != null) {
+            unknownWordProfiler.record(unknownWord, termBeforeUnknownWord, "");
+            unknownWord = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pool == null) {
+            tokenizer.close();
+        } else if (tokenizer != null) {
+            final JapaneseTokenizer pooledTokenizer = tokenizer;
+            tokenizer = null;
+            pooledAttributes = null;
+            pooledTokenizer.close();
+            pool.release(config, pooledTokenizer);
+        }
+        super.close();
+        event = null;
+        sampling = false;
+        previousTerm = null;
+        unknownWord = null;
+        termBeforeUnknownWord = null;
+        recording = null;
+        replaying = null;
+    }
+
+    private void resetTokenizer(final Reader reader) throws IOException {
+        if (pool != null && tokenizer == null) {
+            tokenizer = pool.borrow(config);
+            pooledAttributes = new AttributeImpl[tokenizerAttributes.size()];
+            for (final Iterator<AttributeImpl> it = tokenizer.getAttributeImplsIterator(); it.hasNext();) {
+                final AttributeImpl attImpl = it.next();
+                for (int i = 0; i < pooledAttributes.length; i++) {
+                    if (tokenizerAttributes.get(i).getClass() == attImpl.getClass()) {
+                        pooledAttributes[i] = attImpl;
+                    }
+                }
+            }
+        }
+        tokenizer.setReader(reader);
+        tokenizer.reset();
+    }
+
+    private void copyPooledAttributes() {
+        for (int i = 0; i < pooledAttributes.length; i++) {
+            pooledAttributes[i].copyTo(tokenizerAttributes.get(i));
+        }
+    }
+
+    private void addTokenizerAttribute(final AttributeImpl attImpl) {
+        for (final AttributeImpl tokenizerAttribute : tokenizerAttributes) {
+            if (tokenizerAttribute == attImpl) {
+                return;
+            }
+        }
+        tokenizerAttributes.add(attImpl);
+    }
+
+    /**
+     * Reads the input into the buffer until it exceeds {@link #MAX_REUSABLE_LENGTH}.
+     */
+    private int readInput(final char[] readBuffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < readBuffer.length && (read = input.read(readBuffer, length, readBuffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    private void profile() {
+        final String term = termAtt.toString();
+        if (unknownWord != null) {
+            unknownWordProfiler.record(unknownWord, termBeforeUnknownWord, term);
+            unknownWord = null;
+        }
+        if (readingAtt.getReading() == null && isWord(term)) {
+            unknownWord = term;
+            termBeforeUnknownWord = previousTerm;
+        }
+        previousTerm = term;
+    }
+
+    private static boolean isWord(final String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isLetterOrDigit(term.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commitEvent(final int charCount) {
+        event.commit(indexName, tokenizerName, config.getMode().name(), charCount, tokenCount, unknownWordCount, replaying != null);
+        event = null;
+    }
+
+    private static class Segmentation {
+
+        private final KuromojiTokenizerConfig config;
+
+        private final String text;
+
+        private final List<AttributeImpl[]> tokens = new ArrayList<>();
+
+        private int finalOffset;
+
+        private boolean complete;
+
+        Segmentation(final KuromojiTokenizerConfig config, final String text) {
+            this.config = config;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Reader which returns the buffered head of an input, and then the rest of it.
+     */
+    private static class PrefixedReader extends Reader {
+
+        private final char[] prefix;
+
+        private final int prefixLength;
+
+        private final Reader in;
+
+        private int pos;
+
+        PrefixedReader(final char[] prefix, final int prefixLength, final Reader in) {
+            this.prefix = prefix;
+            this.prefixLength = prefixLength;
+            this.in = in;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos < prefixLength) {
+                final int n = Math.min(len, prefixLength - pos);
+                System.arraycopy(prefix, pos, cbuf, off, n);
+                pos += n;
+                return n;
+            }
+            return in.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Makes the delegate use the attribute instances of this tokenizer.
+     */
+    private class SharedAttributeFactory extends AttributeFactory {
+        @Override
+        public AttributeImpl createAttributeInstance(final Class<? extends Attribute> attClass) {
+            final AttributeImpl attImpl = (AttributeImpl) addAttribute(attClass);
+            addTokenizerAttribute(attImpl);
+            return attImpl;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.util.Objects;
+
+import org.apache.lucene.util.AttributeFactory;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer.Mode;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+
+/**
+ * Effective settings of {@link JapaneseTokenizer}.
+ * Tokenizers with equal configurations produce the same tokens for the same input.
+ * User dictionaries are compared by identity.
+ */
+public final class KuromojiTokenizerConfig {
+
+    private final UserDictionary userDictionary;
+
+    private final String userDictionaryKey;
+
+    private final boolean discardPunctuation;
+
+    private final Mode mode;
+
+    private final int nBestCost;
+
+    public KuromojiTokenizerConfig(final UserDictionary userDictionary, final String userDictionaryKey,
+            final boolean discardPunctuation, final Mode mode, final int nBestCost) {
+        this.userDictionary = userDictionary;
+        this.userDictionaryKey = userDictionaryKey;
+        this.discardPunctuation = discardPunctuation;
+        this.mode = mode;
+        this.nBestCost = nBestCost;
+    }
+
+    public JapaneseTokenizer newTokenizer(final AttributeFactory factory) {
+        final JapaneseTokenizer tokenizer = new JapaneseTokenizer(factory, userDictionary, discardPunctuation, mode);
+        tokenizer.setNBestCost(nBestCost);
+        return tokenizer;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final KuromojiTokenizerConfig other = (KuromojiTokenizerConfig) obj;
+        return userDictionary == other.userDictionary && discardPunctuation == other.discardPunctuation && nBestCost == other.nBestCost
+                && mode == other.mode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(userDictionary), discardPunctuation, mode, nBestCost);
+    }
+
+    @Override
+    public String toString() {
+        return "KuromojiTokenizerConfig [userDictionary=" + userDictionaryKey + ", discardPunctuation=" + discardPunctuation
+                + ", mode=" + mode + ", nBestCost=" + nBestCost + "]";
+    }
+}
@@ -23,11 +23,13 @@ import java.io.IOException;
 import java.io.Reader;
 
 import org.apache.lucene.analysis.Tokenizer;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
 import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer;
 import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer.Mode;
 import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
@@ -35,24 +37,45 @@ import org.elasticsearch.index.analysis.Analysis;
 
 public class KuromojiTokenizerFactory extends AbstractTokenizerFactory {
 
-    private static final String USER_DICT_OPTION = "user_dictionary";
+    private static final String USER_DICT_OPTION = UserDictionaryLoader.USER_DICT_OPTION;
     private static final String NBEST_COST = "nbest_cost";
     private static final String NBEST_EXAMPLES = "nbest_examples";
+    private static final String USER_DICT_TIMEOUT = "user_dictionary_timeout";
+    private static final String UNKNOWN_WORD_SAMPLE_RATE = "unknown_word_sample_rate";
+    private static final String REUSE_SEGMENTATION = "reuse_segmentation";
 
-    private final UserDictionary userDictionary;
+    private final UserDictionaryHandle userDictionaryHandle;
     private final Mode mode;
     private final String nBestExamples;
     private final int nBestCost;
+    private final String indexName;
+    private final String name;
+    private final UnknownWordProfiler unknownWordProfiler;
+    private final double unknownWordSampleRate;
+    private final boolean reuseSegmentation;
+    private final KuromojiTokenizerPool tokenizerPool;
+    private volatile KuromojiTokenizerConfig config;
 
     private boolean discartPunctuation;
 
-    public KuromojiTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+    public KuromojiTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings,
+            UserDictionaryLoader userDictionaryLoader, UnknownWordProfiler unknownWordProfiler, KuromojiTokenizerPool tokenizerPool) {
         super(indexSettings, settings);
         mode = getMode(settings);
-        userDictionary = getUserDictionary(env, settings);
+        userDictionaryHandle = new UserDictionaryHandle(userDictionaryLoader, env, settings,
+                settings.getAsTime(USER_DICT_TIMEOUT, TimeValue.timeValueSeconds(60)));
         discartPunctuation = settings.getAsBoolean("discard_punctuation", true);
         nBestCost = settings.getAsInt(NBEST_COST, -1);
         nBestExamples = settings.get(NBEST_EXAMPLES);
+        indexName = indexSettings.getIndex().getName();
+        this.name = name;
+        this.unknownWordProfiler = unknownWordProfiler;
+        unknownWordSampleRate = settings.getAsDouble(UNKNOWN_WORD_SAMPLE_RATE, 0.0);
+        if (unknownWordSampleRate < 0.0 || unknownWordSampleRate > 1.0) {
+            throw new IllegalArgumentException("[" + UNKNOWN_WORD_SAMPLE_RATE + "] must be between 0.0 and 1.0: " + unknownWordSampleRate);
+        }
+        reuseSegmentation = settings.getAsBoolean(REUSE_SEGMENTATION, false);
+        this.tokenizerPool = tokenizerPool != null && tokenizerPool.isEnabled() ? tokenizerPool : null;
     }
 
     public static UserDictionary getUserDictionary(Environment env, Settings settings) {
@@ -87,14 +110,28 @@ public class KuromojiTokenizerFactory extends AbstractTokenizerFactory {
         return mode;
     }
 
+    private KuromojiTokenizerConfig config() {
+        KuromojiTokenizerConfig config = this.config;
+        if (config == null) {
+            final UserDictionary userDictionary = userDictionaryHandle.get();
+            int nBestCost = this.nBestCost;
+            if (nBestExamples != null) {
+                JapaneseTokenizer t = new JapaneseTokenizer(userDictionary, discartPunctuation, mode);
+                nBestCost = Math.max(nBestCost, t.calcNBestCost(nBestExamples));
+            }
+            config = new KuromojiTokenizerConfig(userDictionary, userDictionaryHandle.getKey(), discartPunctuation, mode, nBestCost);
+            this.config = config;
+        }
+        return config;
+    }
+
     @Override
     public Tokenizer create() {
-        JapaneseTokenizer t = new JapaneseTokenizer(userDictionary, discartPunctuation, mode);
-        int nBestCost = this.nBestCost;
-        if (nBestExamples != null) {
-            nBestCost = Math.max(nBestCost, t.calcNBestCost(nBestExamples));
+        KuromojiTokenizer t = new KuromojiTokenizer(config(), tokenizerPool, indexName, name);
+        if (unknownWordProfiler != null && unknownWordSampleRate > 0.0) {
+            t.setUnknownWordProfiler(unknownWordProfiler, unknownWordSampleRate);
         }
-        t.setNBestCost(nBestCost);
+        t.setSegmentationReuse(reuseSegmentation);
         return t;
     }
 
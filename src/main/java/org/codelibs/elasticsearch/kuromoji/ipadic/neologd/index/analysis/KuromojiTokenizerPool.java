@@ -0,0 +1,137 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Node-level pool of {@link JapaneseTokenizer} instances keyed by {@link KuromojiTokenizerConfig}.
+ * <p>
+ * {@link KuromojiTokenizer} borrows a tokenizer for each input and returns it on close, so the number of
+ * lattices and buffers follows the number of active analysis threads instead of indices × threads.
+ * At most {@link #MAX_IDLE_SETTING} tokenizers are kept idle, and they are evicted after {@link #KEEP_ALIVE_SETTING}.
+ * Borrowing and releasing do not lock, because they run for each input on every analysis thread.
+ */
+public class KuromojiTokenizerPool {
+
+    public static final Setting<Boolean> ENABLED_SETTING =
+            Setting.boolSetting("kuromoji_ipadic_neologd.tokenizer_pool.enabled", false, Property.NodeScope);
+
+    public static final Setting<Integer> MAX_IDLE_SETTING =
+            Setting.intSetting("kuromoji_ipadic_neologd.tokenizer_pool.max_idle", 256, 0, Property.NodeScope);
+
+    public static final Setting<TimeValue> KEEP_ALIVE_SETTING =
+            Setting.timeSetting("kuromoji_ipadic_neologd.tokenizer_pool.keep_alive", TimeValue.timeValueMinutes(5),
+                    TimeValue.timeValueSeconds(1), Property.NodeScope);
+
+    private final boolean enabled;
+
+    private final int maxIdle;
+
+    private final TimeValue keepAlive;
+
+    private final ConcurrentMap<KuromojiTokenizerConfig, ConcurrentLinkedDeque<IdleTokenizer>> idleTokenizers =
+            new ConcurrentHashMap<>();
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public KuromojiTokenizerPool(final Settings settings) {
+        enabled = ENABLED_SETTING.get(settings);
+        maxIdle = MAX_IDLE_SETTING.get(settings);
+        keepAlive = KEEP_ALIVE_SETTING.get(settings);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void start(final ThreadPool threadPool) {
+        if (enabled) {
+            threadPool.scheduleWithFixedDelay(this::evictIdleTokenizers, keepAlive, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    /**
+     * Returns an idle tokenizer for the configuration, or a new one if none is idle.
+     */
+    public JapaneseTokenizer borrow(final KuromojiTokenizerConfig config) {
+        final ConcurrentLinkedDeque<IdleTokenizer> deque = idleTokenizers.get(config);
+        if (deque != null) {
+            final IdleTokenizer idle = deque.pollFirst();
+            if (idle != null) {
+                idleCount.decrementAndGet();
+                return idle.tokenizer;
+            }
+        }
+        return config.newTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY);
+    }
+
+    /**
+     * Returns a closed tokenizer to the pool. It is dropped if the pool is full.
+     */
+    public void release(final KuromojiTokenizerConfig config, final JapaneseTokenizer tokenizer) {
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        final IdleTokenizer idle = new IdleTokenizer(tokenizer, System.nanoTime());
+        while (true) {
+            final ConcurrentLinkedDeque<IdleTokenizer> deque = idleTokenizers.computeIfAbsent(config, k -> new ConcurrentLinkedDeque<>());
+            deque.addFirst(idle);
+            if (idleTokenizers.get(config) == deque) {
+                return;
+            }
+            // the deque has been removed by the eviction, so move the tokenizer to a new one
+            if (!deque.remove(idle)) {
+                // taken by a borrower or the eviction, which has updated the count
+                return;
+            }
+        }
+    }
+
+    void evictIdleTokenizers() {
+        final long threshold = System.nanoTime() - keepAlive.nanos();
+        for (final Map.Entry<KuromojiTokenizerConfig, ConcurrentLinkedDeque<IdleTokenizer>> entry : idleTokenizers.entrySet()) {
+            final ConcurrentLinkedDeque<IdleTokenizer> deque = entry.getValue();
+            IdleTokenizer idle;
+            while ((idle = deque.peekLast()) != null && idle.releasedTime - threshold < 0) {
+                if (deque.removeLastOccurrence(idle)) {
+                    idleCount.decrementAndGet();
+                }
+            }
+            // remove the deque so that it does not keep the user dictionary of a deleted index
+            if (deque.isEmpty() && idleTokenizers.remove(entry.getKey(), deque)) {
+                // tokenizers released concurrently are dropped
+                while (deque.pollLast() != null) {
+                    idleCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    private static class IdleTokenizer {
+
+        private final JapaneseTokenizer tokenizer;
+
+        private final long releasedTime;
+
+        IdleTokenizer(final JapaneseTokenizer tokenizer, final long releasedTime) {
+            this.tokenizer = tokenizer;
+            this.releasedTime = releasedTime;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
+
+/**
+ * User dictionary of a tokenizer factory, which is built by {@link UserDictionaryLoader}.
+ * <p>
+ * A failed build is not kept forever: it is started again on the next access once a backoff has elapsed since the failure,
+ * which doubles from {@link #INITIAL_BACKOFF} up to {@link #MAX_BACKOFF}.
+ * For example, the dictionary index may not be allocated yet when indices are opened on a full cluster restart.
+ */
+public class UserDictionaryHandle {
+
+    private static final Logger logger = LogManager.getLogger(UserDictionaryHandle.class);
+
+    static final TimeValue INITIAL_BACKOFF = TimeValue.timeValueSeconds(1);
+
+    static final TimeValue MAX_BACKOFF = TimeValue.timeValueMinutes(1);
+
+    private final UserDictionaryLoader userDictionaryLoader;
+
+    private final Environment env;
+
+    private final Settings settings;
+
+    private final String key;
+
+    private final TimeValue timeout;
+
+    private volatile CompletableFuture<UserDictionary> future;
+
+    private long backoffNanos = INITIAL_BACKOFF.nanos();
+
+    private volatile long failedTime;
+
+    public UserDictionaryHandle(final UserDictionaryLoader userDictionaryLoader, final Environment env, final Settings settings,
+            final TimeValue timeout) {
+        this.userDictionaryLoader = userDictionaryLoader;
+        this.env = env;
+        this.settings = settings;
+        this.timeout = timeout;
+        key = UserDictionaryLoader.createKey(env, settings);
+        future = key != null ? load() : null;
+    }
+
+    private CompletableFuture<UserDictionary> load() {
+        // the returned future completes after the failure time is recorded
+        return userDictionaryLoader.load(env, settings).whenComplete((userDictionary, e) -> {
+            if (e != null) {
+                failedTime = System.nanoTime();
+            }
+        });
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the user dictionary, or null if no dictionary is specified.
+     * This method waits for the build until the timeout elapses.
+     */
+    public UserDictionary get() {
+        CompletableFuture<UserDictionary> future = this.future;
+        if (future == null) {
+            return null;
+        }
+        if (future.isCompletedExceptionally()) {
+            future = retry(future);
+        }
+        return UserDictionaryLoader.get(future, key, timeout);
+    }
+
+    private synchronized CompletableFuture<UserDictionary> retry(final CompletableFuture<UserDictionary> failed) {
+        if (future != failed) {
+            // retried by another thread
+            return future;
+        }
+        // the backoff is measured from the failure of the build
+        if (System.nanoTime() - failedTime < backoffNanos) {
+            return failed;
+        }
+        backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF.nanos());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Retrying the build of {}, next backoff: {}ms", key, TimeUnit.NANOSECONDS.toMillis(backoffNanos));
+        }
+        future = load();
+        return future;
+    }
+}
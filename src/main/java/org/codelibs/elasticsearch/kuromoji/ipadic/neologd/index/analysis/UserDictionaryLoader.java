@@ -0,0 +1,219 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary.UserDictionaryStore;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr.DictionaryLoadEventHandle;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr.JfrEvents;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
+
+/**
+ * Builds user dictionaries on a dedicated thread pool so that index creation
+ * does not parse dictionary files on the cluster state applier thread.
+ * Concurrent requests for the same dictionary share a single in-flight build.
+ */
+public class UserDictionaryLoader {
+
+    private static final Logger logger = LogManager.getLogger(UserDictionaryLoader.class);
+
+    public static final String THREAD_POOL_NAME = "kuromoji_ipadic_neologd_dictionary";
+
+    public static final String USER_DICT_OPTION = "user_dictionary";
+
+    public static final String USER_DICT_NAME_OPTION = "user_dictionary_name";
+
+    public static final String USER_DICT_VERSION_OPTION = "user_dictionary_version";
+
+    private final Map<String, CompletableFuture<UserDictionary>> inFlightBuilds = new ConcurrentHashMap<>();
+
+    private final Set<String> builtKeys = ConcurrentHashMap.newKeySet();
+
+    // dictionary files which are in use, so that indices with the same file share one instance
+    private final Map<String, WeakReference<UserDictionary>> fileDictionaries = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService executor;
+
+    private volatile UserDictionaryStore userDictionaryStore;
+
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setUserDictionaryStore(final UserDictionaryStore userDictionaryStore) {
+        this.userDictionaryStore = userDictionaryStore;
+    }
+
+    /**
+     * Returns a future for the user dictionary specified by the settings, or null if no dictionary is specified.
+     * The dictionary is read from the config directory, or fetched from {@link UserDictionaryStore}.
+     * Failed builds are not cached, so calling this again starts a new build.
+     *
+     * @throws IllegalArgumentException if the dictionary file is not readable
+     */
+    public CompletableFuture<UserDictionary> load(final Environment env, final Settings settings) {
+        final String key = createKey(env, settings);
+        if (key == null) {
+            return null;
+        }
+        final String name = settings.get(USER_DICT_NAME_OPTION);
+        if (name != null) {
+            final UserDictionaryStore store = userDictionaryStore;
+            if (store == null) {
+                throw new IllegalStateException("kuromoji user dictionary store is not initialized");
+            }
+            final long version = settings.getAsLong(USER_DICT_VERSION_OPTION, -1L);
+            return load(key, () -> store.load(name, version));
+        }
+        // check the file on the caller thread, so that a missing file is reported on index creation
+        final Path path = env.configFile().resolve(settings.get(USER_DICT_OPTION));
+        if (!Files.isReadable(path)) {
+            throw new IllegalArgumentException("kuromoji user dictionary [" + path + "] does not exist or is not readable");
+        }
+        final WeakReference<UserDictionary> ref = fileDictionaries.get(key);
+        final UserDictionary userDictionary = ref != null ? ref.get() : null;
+        if (userDictionary != null) {
+            return CompletableFuture.completedFuture(userDictionary);
+        }
+        return load(key, () -> {
+            final UserDictionary built = KuromojiTokenizerFactory.getUserDictionary(env, settings);
+            fileDictionaries.values().removeIf(r -> r.get() == null);
+            if (built != null) {
+                fileDictionaries.put(key, new WeakReference<>(built));
+            }
+            return built;
+        });
+    }
+
+    /**
+     * Returns a future for the dictionary identified by the given key, starting a build
+     * if no build for the key is running.
+     */
+    public CompletableFuture<UserDictionary> load(final String key, final Supplier<UserDictionary> builder) {
+        final ExecutorService executor = this.executor;
+        if (executor == null) {
+            // the plugin components are not initialized, so build it on the caller thread
+            return CompletableFuture.completedFuture(build(key, builder));
+        }
+
+        final CompletableFuture<UserDictionary> future = new CompletableFuture<>();
+        final CompletableFuture<UserDictionary> existing = inFlightBuilds.putIfAbsent(key, future);
+        if (existing != null) {
+            logger.debug("Joining the in-flight build of {}", key);
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                final long startTime = System.nanoTime();
+                try {
+                    future.complete(build(key, builder));
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Built {} in {}ms", key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    }
+                } catch (final Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlightBuilds.remove(key, future);
+                }
+            });
+        } catch (final Exception e) {
+            inFlightBuilds.remove(key, future);
+            future.completeExceptionally(new ElasticsearchException("failed to schedule the build of kuromoji user dictionary [{}]", e, key));
+        }
+        return future;
+    }
+
+    private UserDictionary build(final String key, final Supplier<UserDictionary> builder) {
+        final boolean reload = !builtKeys.add(key);
+        final DictionaryLoadEventHandle event = JfrEvents.beginDictionaryLoad();
+        if (event == null) {
+            return builder.get();
+        }
+        boolean success = false;
+        try {
+            final UserDictionary userDictionary = builder.get();
+            success = true;
+            return userDictionary;
+        } finally {
+            event.commit(key, reload, success);
+        }
+    }
+
+    /**
+     * Waits for the dictionary build to finish.
+     */
+    public static UserDictionary get(final Future<UserDictionary> future, final String key, final TimeValue timeout) {
+        try {
+            return future.get(timeout.millis(), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            throw new ElasticsearchException("timed out after [{}] waiting for kuromoji user dictionary [{}] to be built", e, timeout,
+                    key);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchException("interrupted while waiting for kuromoji user dictionary [{}] to be built", e, key);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ElasticsearchException) {
+                throw (ElasticsearchException) cause;
+            }
+            throw new ElasticsearchException("failed to load kuromoji user dictionary [{}]", cause, key);
+        }
+    }
+
+    /**
+     * Creates a key which identifies the user dictionary specified by the settings, or returns null if no dictionary is specified.
+     */
+    public static String createKey(final Environment env, final Settings settings) {
+        final String path = settings.get(USER_DICT_OPTION);
+        final String name = settings.get(USER_DICT_NAME_OPTION);
+        if (path != null && name != null) {
+            throw new IllegalArgumentException(
+                    "[" + USER_DICT_OPTION + "] and [" + USER_DICT_NAME_OPTION + "] cannot be specified at the same time");
+        }
+        if (path != null) {
+            return createKey(env.configFile().resolve(path));
+        }
+        if (name != null) {
+            UserDictionaryStore.validateName(name);
+            // the latest version is resolved at index creation, so that all nodes use the same version
+            final long version = settings.getAsLong(USER_DICT_VERSION_OPTION, -1L);
+            if (version < 0) {
+                throw new IllegalArgumentException("[" + USER_DICT_VERSION_OPTION + "] must be specified for kuromoji user dictionary ["
+                        + name + "]");
+            }
+            return UserDictionaryStore.INDEX_NAME + "/" + UserDictionaryStore.toId(name, version);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a key which identifies the content of the dictionary file.
+     */
+    public static String createKey(final Path path) {
+        try {
+            return path.toAbsolutePath() + "@" + Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path);
+        } catch (final IOException e) {
+            // the build reports the missing file
+            return path.toAbsolutePath().toString();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+/**
+ * Analyze event which has begun.
+ */
+public interface AnalyzeEventHandle {
+
+    /**
+     * Ends the event, and commits it if it exceeds the threshold.
+     */
+    void commit(String index, String analyzer, String mode, int charCount, int tokenCount, int unknownWordCount,
+            boolean segmentationReused);
+}
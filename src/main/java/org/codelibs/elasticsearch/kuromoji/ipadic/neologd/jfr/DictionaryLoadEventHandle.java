@@ -0,0 +1,12 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+/**
+ * DictionaryLoad event which has begun.
+ */
+public interface DictionaryLoadEventHandle {
+
+    /**
+     * Ends the event, and commits it if it exceeds the threshold.
+     */
+    void commit(String dictionary, boolean reload, boolean success);
+}
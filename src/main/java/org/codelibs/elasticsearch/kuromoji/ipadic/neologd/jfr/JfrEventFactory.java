@@ -0,0 +1,18 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+/**
+ * Creates JFR events. The implementation is compiled separately for Java 11,
+ * so the rest of the plugin does not depend on jdk.jfr.
+ */
+public interface JfrEventFactory {
+
+    /**
+     * Begins an Analyze event, or returns null if it is disabled.
+     */
+    AnalyzeEventHandle beginAnalyze();
+
+    /**
+     * Begins a DictionaryLoad event, or returns null if it is disabled.
+     */
+    DictionaryLoadEventHandle beginDictionaryLoad();
+}
@@ -0,0 +1,45 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+/**
+ * Entry point of Java Flight Recorder events.
+ * <p>
+ * The event classes are compiled only on JDK 11 or later, and loaded only if the running JVM has jdk.jfr,
+ * so the plugin still runs on Java 8 without the events.
+ * They are also missing from runtime images built without the jdk.jfr module.
+ */
+public final class JfrEvents {
+
+    private static final String FACTORY_CLASS_NAME = "org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr.JdkJfrEventFactory";
+
+    private static final JfrEventFactory FACTORY = loadFactory();
+
+    public static final boolean AVAILABLE = FACTORY != null;
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Begins an Analyze event, or returns null if it is unavailable or disabled.
+     */
+    public static AnalyzeEventHandle beginAnalyze() {
+        return FACTORY != null ? FACTORY.beginAnalyze() : null;
+    }
+
+    /**
+     * Begins a DictionaryLoad event, or returns null if it is unavailable or disabled.
+     */
+    public static DictionaryLoadEventHandle beginDictionaryLoad() {
+        return FACTORY != null ? FACTORY.beginDictionaryLoad() : null;
+    }
+
+    private static JfrEventFactory loadFactory() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            // missing if the plugin is built on JDK 8, and fails to link on a Java 8 runtime
+            return Class.forName(FACTORY_CLASS_NAME, true, JfrEvents.class.getClassLoader()).asSubclass(JfrEventFactory.class)
+                    .getConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
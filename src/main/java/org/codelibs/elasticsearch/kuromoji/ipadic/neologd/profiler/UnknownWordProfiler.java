@@ -0,0 +1,275 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Counts unknown words sampled from kuromoji_ipadic_neologd_tokenizer with the Space-Saving algorithm,
+ * so that frequent words missing from the dictionary can be added to a user dictionary.
+ * The number of tracked words is bounded by {@link #CAPACITY_SETTING}.
+ * <p>
+ * Each node has one profiler, and the reports of all nodes are merged by {@link #merge(Collection, int)}.
+ */
+public class UnknownWordProfiler {
+
+    public static final Setting<Integer> CAPACITY_SETTING =
+            Setting.intSetting("kuromoji_ipadic_neologd.unknown_word_profiler.capacity", 1000, 1, Property.NodeScope);
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    private final TreeSet<Counter> orderedCounters = new TreeSet<>();
+
+    private final AtomicLong sampledInputs = new AtomicLong();
+
+    private long sequence;
+
+    public UnknownWordProfiler(final Settings settings) {
+        capacity = CAPACITY_SETTING.get(settings);
+    }
+
+    public void onSample() {
+        sampledInputs.incrementAndGet();
+    }
+
+    /**
+     * Records an unknown word with the tokens around it.
+     * This method locks the profiler of the node, so sampled inputs contend with each other,
+     * and the sample rate of busy indices should be kept low.
+     */
+    public synchronized void record(final String surface, final String previous, final String next) {
+        Counter counter = counters.get(surface);
+        if (counter != null) {
+            orderedCounters.remove(counter);
+            counter.count++;
+        } else if (counters.size() < capacity) {
+            counter = new Counter(surface, 1, 0);
+            counters.put(surface, counter);
+        } else {
+            // replace the least frequent word, which over-estimates the new one by its count
+            final Counter min = orderedCounters.pollFirst();
+            counters.remove(min.surface);
+            counter = new Counter(surface, min.count + 1, min.count);
+            counters.put(surface, counter);
+        }
+        counter.previous = previous;
+        counter.next = next;
+        counter.sequence = sequence++;
+        orderedCounters.add(counter);
+    }
+
+    public synchronized void clear() {
+        counters.clear();
+        orderedCounters.clear();
+        sampledInputs.set(0);
+    }
+
+    /**
+     * Returns the most frequent unknown words.
+     */
+    public synchronized List<Counter> getTopWords(final int size) {
+        final List<Counter> words = new ArrayList<>(Math.min(size, counters.size()));
+        final Iterator<Counter> iterator = orderedCounters.descendingIterator();
+        while (iterator.hasNext() && words.size() < size) {
+            words.add(iterator.next().copy());
+        }
+        return words;
+    }
+
+    public synchronized Report getReport(final int size) {
+        // a word which is not tracked may have been counted up to the minimum count before it was replaced
+        final long minCount = counters.size() < capacity ? 0 : orderedCounters.first().count;
+        return new Report(sampledInputs.get(), minCount, getTopWords(size));
+    }
+
+    /**
+     * Merges the reports of nodes. The count of a word includes the minimum count of each node which does not track it,
+     * and so does the error, as the Space-Saving algorithm over-estimates a word replacing another.
+     */
+    public static Report merge(final Collection<Report> reports, final int size) {
+        long sampledInputs = 0;
+        long minCount = 0;
+        for (final Report report : reports) {
+            sampledInputs += report.sampledInputs;
+            minCount += report.minCount;
+        }
+        final Map<String, Counter> merged = new HashMap<>();
+        for (final Report report : reports) {
+            for (final Counter word : report.words) {
+                Counter counter = merged.get(word.surface);
+                if (counter == null) {
+                    counter = new Counter(word.surface, minCount, minCount);
+                    counter.previous = word.previous;
+                    counter.next = word.next;
+                    merged.put(word.surface, counter);
+                }
+                counter.count += word.count - report.minCount;
+                counter.error += word.error - report.minCount;
+            }
+        }
+        final List<Counter> words = new ArrayList<>(merged.values());
+        words.sort(Comparator.comparingLong(Counter::getCount).reversed().thenComparing(Counter::getSurface));
+        return new Report(sampledInputs, minCount, words.size() > size ? new ArrayList<>(words.subList(0, size)) : words);
+    }
+
+    /**
+     * Formats the words as user dictionary entries.
+     * Hiragana is converted to Katakana for the reading, so readings of other words should be reviewed.
+     */
+    public static String toUserDictionary(final List<Counter> words, final String partOfSpeech) {
+        final StringBuilder buf = new StringBuilder();
+        for (final Counter word : words) {
+            final String surface = quote(word.surface);
+            buf.append(surface).append(',').append(surface).append(',').append(quote(toKatakana(word.surface))).append(',')
+                    .append(quote(partOfSpeech)).append('\n');
+        }
+        return buf.toString();
+    }
+
+    private static String toKatakana(final String value) {
+        final char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'ぁ' && chars[i] <= 'ゖ') {
+                chars[i] += 0x60;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String quote(final String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    public static class Counter implements Comparable<Counter> {
+
+        private final String surface;
+
+        private long count;
+
+        private long error;
+
+        private String previous;
+
+        private String next;
+
+        private long sequence;
+
+        Counter(final String surface, final long count, final long error) {
+            this.surface = surface;
+            this.count = count;
+            this.error = error;
+        }
+
+        Counter copy() {
+            final Counter counter = new Counter(surface, count, error);
+            counter.previous = previous;
+            counter.next = next;
+            counter.sequence = sequence;
+            return counter;
+        }
+
+        public String getSurface() {
+            return surface;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public int compareTo(final Counter o) {
+            final int result = Long.compare(count, o.count);
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    public static class Report implements Writeable, ToXContentFragment {
+
+        private final long sampledInputs;
+
+        private final long minCount;
+
+        private final List<Counter> words;
+
+        Report(final long sampledInputs, final long minCount, final List<Counter> words) {
+            this.sampledInputs = sampledInputs;
+            this.minCount = minCount;
+            this.words = words;
+        }
+
+        public Report(final StreamInput in) throws IOException {
+            sampledInputs = in.readVLong();
+            minCount = in.readVLong();
+            final int size = in.readVInt();
+            words = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final Counter counter = new Counter(in.readString(), in.readVLong(), in.readVLong());
+                counter.previous = in.readOptionalString();
+                counter.next = in.readOptionalString();
+                words.add(counter);
+            }
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            out.writeVLong(sampledInputs);
+            out.writeVLong(minCount);
+            out.writeVInt(words.size());
+            for (final Counter word : words) {
+                out.writeString(word.surface);
+                out.writeVLong(word.count);
+                out.writeVLong(word.error);
+                out.writeOptionalString(word.previous);
+                out.writeOptionalString(word.next);
+            }
+        }
+
+        public List<Counter> getWords() {
+            return words;
+        }
+
+        @Override
+        public XContentBuilder toXContent(final XContentBuilder builder, final Params params) throws IOException {
+            builder.field("sampled_inputs", sampledInputs);
+            builder.startArray("words");
+            for (final Counter word : words) {
+                builder.startObject();
+                builder.field("surface", word.surface);
+                builder.field("count", word.count);
+                builder.field("error", word.error);
+                builder.field("context", word.previous + "[" + word.surface + "]" + word.next);
+                builder.endObject();
+            }
+            builder.endArray();
+            return builder;
+        }
+    }
+}
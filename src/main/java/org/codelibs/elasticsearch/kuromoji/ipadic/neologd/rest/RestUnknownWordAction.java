@@ -0,0 +1,94 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.DELETE;
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action.UnknownWordAction;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action.UnknownWordNodesRequest;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.action.UnknownWordNodesResponse;
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.profiler.UnknownWordProfiler;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.action.RestActions;
+import org.elasticsearch.rest.action.RestBuilderListener;
+import org.elasticsearch.rest.action.RestResponseListener;
+
+/**
+ * Shows unknown words counted by {@link UnknownWordProfiler} on all nodes.
+ * <pre>
+ * GET /_kuromoji_ipadic_neologd/unknown_words?size=100
+ * GET /_kuromoji_ipadic_neologd/unknown_words?size=100&amp;format=csv&amp;pos=カスタム名詞
+ * DELETE /_kuromoji_ipadic_neologd/unknown_words
+ * </pre>
+ * The csv format returns user dictionary entries.
+ */
+public class RestUnknownWordAction extends BaseRestHandler {
+
+    public RestUnknownWordAction(final Settings settings, final RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_kuromoji_ipadic_neologd/unknown_words", this);
+        controller.registerHandler(DELETE, "/_kuromoji_ipadic_neologd/unknown_words", this);
+    }
+
+    @Override
+    public String getName() {
+        return "kuromoji_ipadic_neologd_unknown_word_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        if (request.method() == DELETE) {
+            final UnknownWordNodesRequest nodesRequest = new UnknownWordNodesRequest().clear(true);
+            return channel -> client.execute(UnknownWordAction.INSTANCE, nodesRequest,
+                    new RestBuilderListener<UnknownWordNodesResponse>(channel) {
+                        @Override
+                        public RestResponse buildResponse(final UnknownWordNodesResponse response, final XContentBuilder builder)
+                                throws Exception {
+                            builder.startObject();
+                            RestActions.buildNodesHeader(builder, request, response);
+                            builder.field("acknowledged", true);
+                            builder.endObject();
+                            return new BytesRestResponse(RestStatus.OK, builder);
+                        }
+                    });
+        }
+
+        final int size = request.paramAsInt("size", 100);
+        final String format = request.param("format", "json");
+        final String pos = request.param("pos", "カスタム名詞");
+        final UnknownWordNodesRequest nodesRequest = new UnknownWordNodesRequest();
+        if ("csv".equals(format)) {
+            return channel -> client.execute(UnknownWordAction.INSTANCE, nodesRequest,
+                    new RestResponseListener<UnknownWordNodesResponse>(channel) {
+                        @Override
+                        public RestResponse buildResponse(final UnknownWordNodesResponse response) throws Exception {
+                            return new BytesRestResponse(RestStatus.OK, "text/plain; charset=UTF-8",
+                                    UnknownWordProfiler.toUserDictionary(response.getReport(size).getWords(), pos));
+                        }
+                    });
+        } else if (!"json".equals(format)) {
+            throw new IllegalArgumentException("unsupported format [" + format + "]");
+        }
+        return channel -> client.execute(UnknownWordAction.INSTANCE, nodesRequest,
+                new RestBuilderListener<UnknownWordNodesResponse>(channel) {
+                    @Override
+                    public RestResponse buildResponse(final UnknownWordNodesResponse response, final XContentBuilder builder)
+                            throws Exception {
+                        builder.startObject();
+                        RestActions.buildNodesHeader(builder, request, response);
+                        response.getReport(size).toXContent(builder, request);
+                        builder.endObject();
+                        return new BytesRestResponse(RestStatus.OK, builder);
+                    }
+                });
+    }
+}
@@ -0,0 +1,80 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestRequest.Method.PUT;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.elasticsearch.kuromoji.ipadic.neologd.dictionary.UserDictionaryStore;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+
+/**
+ * Uploads a user dictionary to {@link UserDictionaryStore}, or shows its metadata.
+ * <pre>
+ * PUT /_kuromoji_ipadic_neologd/dictionary/{name}
+ * {"rules": ["東京スカイツリー,東京 スカイツリー,トウキョウ スカイツリー,カスタム名詞"]}
+ *
+ * GET /_kuromoji_ipadic_neologd/dictionary/{name}?version={version}
+ * </pre>
+ */
+public class RestUserDictionaryAction extends BaseRestHandler {
+
+    private final UserDictionaryStore userDictionaryStore;
+
+    public RestUserDictionaryAction(final Settings settings, final RestController controller,
+            final UserDictionaryStore userDictionaryStore) {
+        super(settings);
+        this.userDictionaryStore = userDictionaryStore;
+        controller.registerHandler(PUT, "/_kuromoji_ipadic_neologd/dictionary/{name}", this);
+        controller.registerHandler(POST, "/_kuromoji_ipadic_neologd/dictionary/{name}", this);
+        controller.registerHandler(GET, "/_kuromoji_ipadic_neologd/dictionary/{name}", this);
+    }
+
+    @Override
+    public String getName() {
+        return "kuromoji_ipadic_neologd_dictionary_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        final String name = request.param("name");
+        if (request.method() == GET) {
+            final long version = request.paramAsLong("version", -1);
+            return channel -> userDictionaryStore.info(name, version, new RestToXContentListener<>(channel));
+        }
+
+        final List<String> rules = parseRules(request);
+        return channel -> userDictionaryStore.put(name, rules, new RestToXContentListener<>(channel));
+    }
+
+    private static List<String> parseRules(final RestRequest request) throws IOException {
+        if (!request.hasContentOrSourceParam()) {
+            throw new IllegalArgumentException("request body is required");
+        }
+        try (XContentParser parser = request.contentOrSourceParamParser()) {
+            final Map<String, Object> map = parser.map();
+            final Object value = map.get("rules");
+            if (!(value instanceof List)) {
+                throw new IllegalArgumentException("[rules] must be an array of user dictionary entries");
+            }
+            final List<String> rules = new ArrayList<>();
+            for (final Object rule : (List<?>) value) {
+                if (!(rule instanceof String)) {
+                    throw new IllegalArgumentException("[rules] must contain strings only, but found [" + rule + "]");
+                }
+                rules.add((String) rule);
+            }
+            return rules;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded for each input analyzed by kuromoji_ipadic_neologd_tokenizer.
+ * The duration spans from reset() to end(), so it includes the token filters of the analyzer.
+ */
+@Name("org.codelibs.elasticsearch.kuromoji.ipadic.neologd.Analyze")
+@Label("Kuromoji Analyze")
+@Description("Analysis of one input by kuromoji_ipadic_neologd_tokenizer")
+@Category({ "Elasticsearch", "Kuromoji" })
+@Enabled(false)
+@StackTrace(false)
+@Threshold("10 ms")
+public class AnalyzeEvent extends jdk.jfr.Event implements AnalyzeEventHandle {
+
+    @Label("Index")
+    public String index;
+
+    @Label("Analyzer")
+    @Description("Name of the tokenizer")
+    public String analyzer;
+
+    @Label("Mode")
+    public String mode;
+
+    @Label("Char Count")
+    public int charCount;
+
+    @Label("Token Count")
+    public int tokenCount;
+
+    @Label("Unknown Word Count")
+    public int unknownWordCount;
+
+    @Label("Segmentation Reused")
+    @Description("The tokens are replayed from the previous analysis of the same text")
+    public boolean segmentationReused;
+
+    @Override
+    public void commit(final String index, final String analyzer, final String mode, final int charCount, final int tokenCount,
+            final int unknownWordCount, final boolean segmentationReused) {
+        end();
+        if (shouldCommit()) {
+            this.index = index;
+            this.analyzer = analyzer;
+            this.mode = mode;
+            this.charCount = charCount;
+            this.tokenCount = tokenCount;
+            this.unknownWordCount = unknownWordCount;
+            this.segmentationReused = segmentationReused;
+            commit();
+        }
+    }
+}
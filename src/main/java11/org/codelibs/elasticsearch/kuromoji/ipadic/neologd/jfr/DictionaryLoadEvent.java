@@ -0,0 +1,41 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a user dictionary is built.
+ */
+@Name("org.codelibs.elasticsearch.kuromoji.ipadic.neologd.DictionaryLoad")
+@Label("Kuromoji Dictionary Load")
+@Description("Build of a kuromoji user dictionary")
+@Category({ "Elasticsearch", "Kuromoji" })
+@Enabled(false)
+@StackTrace(false)
+public class DictionaryLoadEvent extends jdk.jfr.Event implements DictionaryLoadEventHandle {
+
+    @Label("Dictionary")
+    public String dictionary;
+
+    @Label("Reload")
+    @Description("The dictionary has already been built on this node")
+    public boolean reload;
+
+    @Label("Success")
+    public boolean success;
+
+    @Override
+    public void commit(final String dictionary, final boolean reload, final boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.dictionary = dictionary;
+            this.reload = reload;
+            this.success = success;
+            commit();
+        }
+    }
+}
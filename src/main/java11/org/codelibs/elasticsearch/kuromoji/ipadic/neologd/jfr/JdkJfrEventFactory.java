@@ -0,0 +1,27 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+/**
+ * Creates the jdk.jfr events. This class is loaded by {@link JfrEvents} reflectively.
+ */
+public class JdkJfrEventFactory implements JfrEventFactory {
+
+    @Override
+    public AnalyzeEventHandle beginAnalyze() {
+        final AnalyzeEvent event = new AnalyzeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public DictionaryLoadEventHandle beginDictionaryLoad() {
+        final DictionaryLoadEvent event = new DictionaryLoadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+}
@@ -2,6 +2,7 @@ package org.codelibs.elasticsearch.kuromoji.ipadic.neologd;
 
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -16,6 +17,7 @@ import java.util.Map;
 import org.codelibs.curl.CurlResponse;
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.elasticsearch.runner.net.EcrCurl;
+import org.elasticsearch.ResourceNotFoundException;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.settings.Settings;
@@ -150,6 +152,272 @@ public class KuromojiNeologdPluginTest {
 
     }
 
+    @Test
+    public void test_clear_filter_attributes() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+        final String indexSettings = "{\"index\":{\"analysis\":{" + "\"filter\":{"//
+                + "\"ja_keyword\":{\"type\":\"keyword_marker\",\"keywords\":[\"サーバー\"]}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_ipadic_neologd_tokenizer\","
+                + "\"filter\":[\"ja_keyword\",\"kuromoji_ipadic_neologd_stemmer\"]}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow(index);
+
+        // the keyword attribute of the first token must not prevent the stemming of the last one
+        String text = "サーバーとコンピューター";
+        try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                .body("{\"analyzer\":\"ja_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> tokens = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("tokens");
+            assertEquals("サーバー", tokens.get(0).get("token").toString());
+            assertEquals("コンピュータ", tokens.get(tokens.size() - 1).get("token").toString());
+        }
+    }
+
+    @Test
+    public void test_stored_user_dictionary() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        try (CurlResponse response = EcrCurl.put(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict")
+                .header("Content-Type", "application/json")
+                .body("{\"rules\":[\"東京スカイツリー,東京 スカイツリー,トウキョウ スカイツリー,カスタム名詞\"]}").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+            Map<String, Object> content = response.getContent(EcrCurl.jsonParser());
+            assertEquals("test_dict", content.get("name"));
+            assertEquals(1, ((Number) content.get("version")).intValue());
+        }
+
+        try (CurlResponse response = EcrCurl.put(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict")
+                .header("Content-Type", "application/json").body("{\"rules\":[\"invalid\"]}").execute()) {
+            assertEquals(400, response.getHttpStatusCode());
+        }
+
+        try (CurlResponse response = EcrCurl.put(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict")
+                .header("Content-Type", "application/json").body("{\"rules\":[null]}").execute()) {
+            assertEquals(400, response.getHttpStatusCode());
+        }
+
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+            Map<String, Object> content = response.getContent(EcrCurl.jsonParser());
+            assertEquals(1, ((Number) content.get("version")).intValue());
+        }
+
+        try (CurlResponse response = EcrCurl.put(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict")
+                .header("Content-Type", "application/json")
+                .body("{\"rules\":[\"東京スカイツリー,東京スカイツリー,トウキョウスカイツリー,カスタム名詞\"]}").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+            Map<String, Object> content = response.getContent(EcrCurl.jsonParser());
+            assertEquals(2, ((Number) content.get("version")).intValue());
+        }
+
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+            Map<String, Object> content = response.getContent(EcrCurl.jsonParser());
+            assertEquals(2, ((Number) content.get("version")).intValue());
+        }
+
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/dictionary/test_dict").param("version", "1").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+            Map<String, Object> content = response.getContent(EcrCurl.jsonParser());
+            assertEquals(1, ((Number) content.get("version")).intValue());
+        }
+
+        final String index = "dataset";
+        final String indexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_user_dict\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"mode\":\"extended\","
+                + "\"user_dictionary_name\":\"test_dict\",\"user_dictionary_version\":1}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_user_dict\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow(index);
+
+        String text = "東京スカイツリー";
+        try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                .body("{\"analyzer\":\"ja_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> tokens = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("tokens");
+            assertEquals("東京", tokens.get(0).get("token").toString());
+            assertEquals("スカイツリー", tokens.get(1).get("token").toString());
+        }
+
+        // the latest version is saved to the index settings
+        final String latestIndex = "dataset_latest";
+        final String latestIndexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_user_dict\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"user_dictionary_name\":\"test_dict\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(latestIndex, Settings.builder().loadFromSource(latestIndexSettings, XContentType.JSON).build());
+        runner.ensureYellow(latestIndex);
+        assertEquals("2", runner.client().admin().indices().prepareGetSettings(latestIndex).get().getSetting(latestIndex,
+                "index.analysis.tokenizer.kuromoji_user_dict.user_dictionary_version"));
+
+        final String missingIndexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_user_dict\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"user_dictionary_name\":\"missing_dict\"}"
+                + "}"//
+                + "}}}";
+        try {
+            runner.createIndex("dataset_missing", Settings.builder().loadFromSource(missingIndexSettings, XContentType.JSON).build());
+            fail();
+        } catch (final ResourceNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_reuse_segmentation() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+        final String type = "_doc";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_reuse\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"reuse_segmentation\":true}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\"},"
+                + "\"ja_baseform_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"kuromoji_ipadic_neologd_baseform\"]},"
+                + "\"ja_reading_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"kuromoji_ipadic_neologd_readingform\"]}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+
+        final XContentBuilder mappingBuilder = XContentFactory.jsonBuilder()//
+                .startObject()//
+                .startObject(type)//
+                .startObject("properties")//
+                .startObject("msg")//
+                .field("type", "text")//
+                .field("analyzer", "ja_analyzer")//
+                .startObject("fields")//
+                .startObject("baseform").field("type", "text").field("analyzer", "ja_baseform_analyzer").endObject()//
+                .startObject("reading").field("type", "text").field("analyzer", "ja_reading_analyzer").endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject();
+        runner.createMapping(index, type, mappingBuilder);
+
+        final IndexResponse indexResponse1 = runner.insert(index, type, "1", "{\"msg\":\"東京スカイツリーに行った\"}");
+        assertEquals(RestStatus.CREATED, indexResponse1.status());
+        runner.refresh();
+
+        assertDocCount(1, index, type, "msg", "東京スカイツリーに行った");
+        assertDocCount(1, index, type, "msg.baseform", "行く");
+        assertDocCount(1, index, type, "msg.reading", "東京スカイツリーに行った");
+
+        String text = "東京スカイツリーに行った";
+        try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                .body("{\"analyzer\":\"ja_baseform_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> tokens = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("tokens");
+            assertEquals("行く", tokens.get(tokens.size() - 2).get("token").toString());
+            assertEquals(text.length(), ((Number) tokens.get(tokens.size() - 1).get("end_offset")).intValue());
+        }
+    }
+
+    @Test
+    public void test_reuse_segmentation_with_limit() throws Exception {
+        runner.ensureYellow();
+
+        final String index = "dataset";
+        final String type = "_doc";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_reuse\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"reuse_segmentation\":true}"
+                + "},"//
+                + "\"filter\":{"//
+                + "\"ja_limit\":{\"type\":\"limit\",\"max_token_count\":1}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_limit_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"ja_limit\"]},"
+                + "\"ja_reading_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"kuromoji_ipadic_neologd_readingform\"]}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+
+        final XContentBuilder mappingBuilder = XContentFactory.jsonBuilder()//
+                .startObject()//
+                .startObject(type)//
+                .startObject("properties")//
+                .startObject("msg")//
+                .field("type", "text")//
+                .field("analyzer", "ja_limit_analyzer")//
+                .startObject("fields")//
+                .startObject("reading").field("type", "text").field("analyzer", "ja_reading_analyzer").endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject();
+        runner.createMapping(index, type, mappingBuilder);
+
+        // the limit filter stops the main field early, so the sub-field must not replay its tokens
+        final IndexResponse indexResponse1 = runner.insert(index, type, "1", "{\"msg\":\"東京スカイツリーに行った\"}");
+        assertEquals(RestStatus.CREATED, indexResponse1.status());
+        runner.refresh();
+
+        assertDocCount(0, index, type, "msg", "行った");
+        assertDocCount(1, index, type, "msg.reading", "東京スカイツリーに行った");
+    }
+
+    @Test
+    public void test_unknown_word_profiler() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        // analyze without an index to run on the node which collects the unknown words
+        final String tokenizer = "{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"unknown_word_sample_rate\":1.0}";
+        String text = "今日はxqzvwを使う";
+        for (int i = 0; i < 3; i++) {
+            try (CurlResponse response = EcrCurl.post(node, "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"tokenizer\":" + tokenizer + ",\"text\":\"" + text + "\"}").execute()) {
+                assertEquals(200, response.getHttpStatusCode());
+            }
+        }
+
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/unknown_words").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> words = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("words");
+            assertEquals("xqzvw", words.get(0).get("surface"));
+            assertEquals(3, ((Number) words.get(0).get("count")).intValue());
+            assertEquals("は[xqzvw]を", words.get(0).get("context"));
+        }
+
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/unknown_words").param("format", "csv").execute()) {
+            assertEquals("xqzvw,xqzvw,xqzvw,カスタム名詞\n", response.getContentAsString());
+        }
+
+        // the words are collected from all nodes
+        try (CurlResponse response = EcrCurl.get(runner.getNode(1), "/_kuromoji_ipadic_neologd/unknown_words").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> words = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("words");
+            assertEquals("xqzvw", words.get(0).get("surface"));
+            assertEquals(3, ((Number) words.get(0).get("count")).intValue());
+        }
+
+        try (CurlResponse response = EcrCurl.delete(runner.getNode(1), "/_kuromoji_ipadic_neologd/unknown_words").execute()) {
+            assertEquals(200, response.getHttpStatusCode());
+        }
+        try (CurlResponse response = EcrCurl.get(node, "/_kuromoji_ipadic_neologd/unknown_words").execute()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> words = (List<Map<String, Object>>) response.getContent(EcrCurl.jsonParser()).get("words");
+            assertEquals(0, words.size());
+        }
+    }
+
     private void assertDocCount(int expected, final String index, final String type, final String field, final String value) {
         final SearchResponse searchResponse =
                 runner.search(index, type, QueryBuilders.matchPhraseQuery(field, value), null, 0, numOfDocs);
@@ -0,0 +1,192 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.analysis;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.curl.CurlResponse;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.net.EcrCurl;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.Settings.Builder;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.node.Node;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KuromojiEntityTokenizerFactoryTest {
+
+    private ElasticsearchClusterRunner runner;
+
+    private int numOfNode = 1;
+
+    private File[] userDictFiles;
+
+    private String clusterName;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterName = "es-analysisja-" + System.currentTimeMillis();
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingsBuilder) {
+                settingsBuilder.put("http.cors.enabled", true);
+                settingsBuilder.put("http.cors.allow-origin", "*");
+                settingsBuilder.putList("discovery.seed_hosts", "127.0.0.1:9301");
+                settingsBuilder.putList("cluster.initial_master_nodes", "127.0.0.1:9301");
+            }
+        }).build(newConfigs().clusterName(clusterName).numOfNode(numOfNode).pluginTypes("org.codelibs.elasticsearch.kuromoji.ipadic.neologd.KuromojiNeologdPlugin"));
+
+        userDictFiles = null;
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        runner.close();
+        runner.clean();
+        if (userDictFiles != null) {
+            for (File file : userDictFiles) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    public void test_basic() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{"
+                + "\"analyzer\":{"
+                + "\"ja_entity_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_ipadic_neologd_entity_tokenizer\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow();
+
+        {
+            String text = "昨日きゃりーぱみゅぱみゅを見た";
+            try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"analyzer\":\"ja_entity_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> tokens = (List<Map<String, Object>>) response
+                        .getContent(EcrCurl.jsonParser()).get("tokens");
+                assertEquals(1, tokens.size());
+                assertEquals("きゃりーぱみゅぱみゅ", tokens.get(0).get("token").toString());
+                assertEquals(2, ((Number) tokens.get(0).get("start_offset")).intValue());
+                assertEquals(12, ((Number) tokens.get(0).get("end_offset")).intValue());
+                assertTrue(tokens.get(0).get("type").toString().startsWith("名詞-固有名詞"));
+            }
+        }
+
+        {
+            // 日 in 今日 is not a place
+            String text = "今日は晴れ";
+            try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"analyzer\":\"ja_entity_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> tokens = (List<Map<String, Object>>) response
+                        .getContent(EcrCurl.jsonParser()).get("tokens");
+                assertEquals(0, tokens.size());
+            }
+        }
+    }
+
+    @Test
+    public void test_tags() throws Exception {
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{"
+                + "\"tokenizer\":{"
+                + "\"entity_tokenizer\":{\"type\":\"kuromoji_ipadic_neologd_entity_tokenizer\",\"tags\":[\"名詞-固有名詞-地域\"]}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_entity_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"entity_tokenizer\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow();
+
+        {
+            // the place name is found inside the longer organization name
+            String text = "東京大学";
+            try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"analyzer\":\"ja_entity_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> tokens = (List<Map<String, Object>>) response
+                        .getContent(EcrCurl.jsonParser()).get("tokens");
+                assertEquals("東京", tokens.get(0).get("token").toString());
+                assertEquals(0, ((Number) tokens.get(0).get("start_offset")).intValue());
+                assertEquals(2, ((Number) tokens.get(0).get("end_offset")).intValue());
+                assertTrue(tokens.get(0).get("type").toString().startsWith("名詞-固有名詞-地域"));
+            }
+        }
+    }
+
+    @Test
+    public void test_userDictionary() throws Exception {
+        userDictFiles = new File[numOfNode];
+        for (int i = 0; i < numOfNode; i++) {
+            String homePath = runner.getNode(i).settings().get("path.home");
+            File confPath = new File(homePath, "config");
+            userDictFiles[i] = new File(confPath, "userdict_ja.txt");
+            updateDictionary(userDictFiles[i], "詳細設計書,詳細設計書,ショウサイセッケイショ,カスタム名詞");
+        }
+
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{"
+                + "\"tokenizer\":{"
+                + "\"entity_tokenizer\":{\"type\":\"kuromoji_ipadic_neologd_entity_tokenizer\",\"user_dictionary\":\"userdict_ja.txt\"}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_entity_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"entity_tokenizer\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow();
+
+        {
+            String text = "この詳細設計書を読む";
+            try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"analyzer\":\"ja_entity_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> tokens = (List<Map<String, Object>>) response
+                        .getContent(EcrCurl.jsonParser()).get("tokens");
+                assertEquals(1, tokens.size());
+                assertEquals("詳細設計書", tokens.get(0).get("token").toString());
+                assertEquals("カスタム名詞", tokens.get(0).get("type").toString());
+            }
+        }
+    }
+
+    private void updateDictionary(File file, String content)
+            throws IOException, UnsupportedEncodingException,
+            FileNotFoundException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"))) {
+            bw.write(content);
+            bw.flush();
+        }
+    }
+}
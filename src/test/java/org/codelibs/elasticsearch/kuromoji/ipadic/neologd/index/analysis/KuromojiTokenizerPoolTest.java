@@ -0,0 +1,111 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.JapaneseTokenizer.Mode;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.tokenattributes.BaseFormAttribute;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.tokenattributes.PartOfSpeechAttribute;
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.tokenattributes.ReadingAttribute;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+public class KuromojiTokenizerPoolTest {
+
+    private final KuromojiTokenizerConfig config = new KuromojiTokenizerConfig(null, null, true, Mode.SEARCH, -1);
+
+    private KuromojiTokenizerPool newPool(final int maxIdle, final String keepAlive) {
+        return new KuromojiTokenizerPool(Settings.builder()//
+                .put(KuromojiTokenizerPool.ENABLED_SETTING.getKey(), true)//
+                .put(KuromojiTokenizerPool.MAX_IDLE_SETTING.getKey(), maxIdle)//
+                .put(KuromojiTokenizerPool.KEEP_ALIVE_SETTING.getKey(), keepAlive)//
+                .build());
+    }
+
+    @Test
+    public void test_pooledTokens() throws Exception {
+        final KuromojiTokenizerPool pool = newPool(256, "5m");
+        final String[] texts = { "東京スカイツリーに行った", "きゃりーぱみゅぱみゅが関西国際空港で歌う", "今日はxqzvwを使う" };
+
+        // two indices share the pooled tokenizers
+        final KuromojiTokenizer pooled1 = new KuromojiTokenizer(config, pool, "index1", "ja_tokenizer");
+        final KuromojiTokenizer pooled2 = new KuromojiTokenizer(config, pool, "index2", "ja_tokenizer");
+        final KuromojiTokenizer unpooled = new KuromojiTokenizer(config, null, "index3", "ja_tokenizer");
+        for (int i = 0; i < 3; i++) {
+            for (final String text : texts) {
+                final List<String> expected = analyze(unpooled, text);
+                assertEquals(expected, analyze(pooled1, text));
+                assertEquals(expected, analyze(pooled2, text));
+            }
+        }
+        // one delegate has served both indices, and it has been returned
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_maxIdle() throws Exception {
+        final KuromojiTokenizerPool pool = newPool(2, "5m");
+        final JapaneseTokenizer tokenizer1 = pool.borrow(config);
+        final JapaneseTokenizer tokenizer2 = pool.borrow(config);
+        final JapaneseTokenizer tokenizer3 = pool.borrow(config);
+        pool.release(config, tokenizer1);
+        pool.release(config, tokenizer2);
+        pool.release(config, tokenizer3);
+        assertEquals(2, pool.getIdleCount());
+
+        // the latest released tokenizer is reused first
+        assertSame(tokenizer2, pool.borrow(config));
+        assertEquals(1, pool.getIdleCount());
+        assertSame(tokenizer1, pool.borrow(config));
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_keepAlive() throws Exception {
+        final KuromojiTokenizerPool pool = newPool(2, "1s");
+        final JapaneseTokenizer tokenizer = pool.borrow(config);
+        pool.release(config, tokenizer);
+
+        pool.evictIdleTokenizers();
+        assertEquals(1, pool.getIdleCount());
+
+        Thread.sleep(1100);
+        pool.evictIdleTokenizers();
+        assertEquals(0, pool.getIdleCount());
+        assertNotSame(tokenizer, pool.borrow(config));
+    }
+
+    private static List<String> analyze(final Tokenizer tokenizer, final String text) throws IOException {
+        final CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+        final OffsetAttribute offsetAtt = tokenizer.addAttribute(OffsetAttribute.class);
+        final PositionIncrementAttribute posIncAtt = tokenizer.addAttribute(PositionIncrementAttribute.class);
+        final PositionLengthAttribute posLenAtt = tokenizer.addAttribute(PositionLengthAttribute.class);
+        final ReadingAttribute readingAtt = tokenizer.addAttribute(ReadingAttribute.class);
+        final PartOfSpeechAttribute posAtt = tokenizer.addAttribute(PartOfSpeechAttribute.class);
+        final BaseFormAttribute baseFormAtt = tokenizer.addAttribute(BaseFormAttribute.class);
+        final List<String> tokens = new ArrayList<>();
+        tokenizer.setReader(new StringReader(text));
+        tokenizer.reset();
+        while (tokenizer.incrementToken()) {
+            tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/" + posIncAtt.getPositionIncrement()
+                    + "/" + posLenAtt.getPositionLength() + "/" + readingAtt.getReading() + "/" + posAtt.getPartOfSpeech() + "/"
+                    + baseFormAtt.getBaseForm());
+        }
+        tokenizer.end();
+        tokens.add("end/" + offsetAtt.endOffset());
+        tokenizer.close();
+        return tokens;
+    }
+}
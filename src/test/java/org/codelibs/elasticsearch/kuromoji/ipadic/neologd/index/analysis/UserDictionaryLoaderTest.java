@@ -0,0 +1,140 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.index.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codelibs.neologd.ipadic.lucene.analysis.ja.dict.UserDictionary;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserDictionaryLoaderTest {
+
+    private Path homePath;
+
+    private Environment env;
+
+    private ExecutorService executor;
+
+    private UserDictionaryLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        homePath = Files.createTempDirectory("kuromoji-");
+        final Path configPath = Files.createDirectories(homePath.resolve("config"));
+        env = new Environment(Settings.builder().put("path.home", homePath.toString()).build(), configPath);
+        executor = Executors.newFixedThreadPool(2);
+        loader = new UserDictionaryLoader();
+        loader.setExecutor(executor);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        Files.walk(homePath).sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+
+    @Test
+    public void test_asyncBuild() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger builds = new AtomicInteger();
+        final UserDictionary userDictionary =
+                UserDictionary.open(new StringReader("東京スカイツリー,東京 スカイツリー,トウキョウ スカイツリー,カスタム名詞"));
+
+        final CompletableFuture<UserDictionary> future1 = loader.load("slow", () -> {
+            builds.incrementAndGet();
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return userDictionary;
+        });
+        // the build does not block the caller
+        assertFalse(future1.isDone());
+
+        // joins the in-flight build
+        final CompletableFuture<UserDictionary> future2 = loader.load("slow", () -> {
+            builds.incrementAndGet();
+            return userDictionary;
+        });
+        assertSame(future1, future2);
+
+        try {
+            UserDictionaryLoader.get(future2, "slow", TimeValue.timeValueMillis(100));
+            fail();
+        } catch (final ElasticsearchException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+        }
+
+        latch.countDown();
+        assertSame(userDictionary, UserDictionaryLoader.get(future1, "slow", TimeValue.timeValueSeconds(10)));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void test_missingFile() throws Exception {
+        final Settings settings = Settings.builder().put("user_dictionary", "missing.txt").build();
+        try {
+            new UserDictionaryHandle(loader, env, settings, TimeValue.timeValueSeconds(10));
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("missing.txt"));
+        }
+    }
+
+    @Test
+    public void test_retryFailedBuild() throws Exception {
+        final Path file = env.configFile().resolve("userdict_ja.txt");
+        Files.write(file, "invalid".getBytes(StandardCharsets.UTF_8));
+        final Settings settings = Settings.builder().put("user_dictionary", "userdict_ja.txt").build();
+
+        final UserDictionaryHandle handle = new UserDictionaryHandle(loader, env, settings, TimeValue.timeValueSeconds(10));
+        // waits for the build and fails
+        try {
+            handle.get();
+            fail();
+        } catch (final ElasticsearchException e) {
+            // expected
+        }
+        final long failedTime = System.nanoTime();
+
+        Files.write(file, "東京スカイツリー,東京 スカイツリー,トウキョウ スカイツリー,カスタム名詞".getBytes(StandardCharsets.UTF_8));
+        // the failure is kept within the backoff
+        try {
+            handle.get();
+            if (System.nanoTime() - failedTime < UserDictionaryHandle.INITIAL_BACKOFF.nanos()) {
+                fail();
+            }
+        } catch (final ElasticsearchException e) {
+            // expected
+        }
+
+        // the first access after the backoff rebuilds it
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - failedTime);
+        Thread.sleep(Math.max(0, UserDictionaryHandle.INITIAL_BACKOFF.millis() - elapsedMillis) + 100);
+        assertNotNull(handle.get());
+    }
+}
@@ -0,0 +1,171 @@
+package org.codelibs.elasticsearch.kuromoji.ipadic.neologd.jfr;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.codelibs.curl.CurlResponse;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.net.EcrCurl;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.Settings.Builder;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class AnalyzeEventTest {
+
+    private ElasticsearchClusterRunner runner;
+
+    private int numOfNode = 1;
+
+    private String clusterName;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterName = "es-analysisja-" + System.currentTimeMillis();
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingsBuilder) {
+                settingsBuilder.put("http.cors.enabled", true);
+                settingsBuilder.put("http.cors.allow-origin", "*");
+                settingsBuilder.putList("discovery.seed_hosts", "127.0.0.1:9301");
+                settingsBuilder.putList("cluster.initial_master_nodes", "127.0.0.1:9301");
+            }
+        }).build(newConfigs().clusterName(clusterName).numOfNode(numOfNode).pluginTypes("org.codelibs.elasticsearch.kuromoji.ipadic.neologd.KuromojiNeologdPlugin"));
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        runner.close();
+        runner.clean();
+    }
+
+    @Test
+    public void test_analyzeEvent() throws Exception {
+        assertTrue(JfrEvents.AVAILABLE);
+        runner.ensureYellow();
+        Node node = runner.node();
+
+        final String index = "dataset";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{"
+                + "\"tokenizer\":{"
+                + "\"ja_tokenizer\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"mode\":\"normal\"}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"ja_tokenizer\"}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow();
+
+        final Path file = Files.createTempFile("kuromoji-", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(AnalyzeEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            String text = "今日はxqzvwを使う";
+            try (CurlResponse response = EcrCurl.post(node, "/" + index + "/_analyze").header("Content-Type", "application/json")
+                    .body("{\"analyzer\":\"ja_analyzer\",\"text\":\"" + text + "\"}").execute()) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> tokens = (List<Map<String, Object>>) response
+                        .getContent(EcrCurl.jsonParser()).get("tokens");
+                assertEquals(5, tokens.size());
+            }
+
+            recording.stop();
+            recording.dump(file);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> "org.codelibs.elasticsearch.kuromoji.ipadic.neologd.Analyze".equals(e.getEventType().getName()))
+                    .collect(Collectors.toList());
+            assertEquals(1, events.size());
+            final RecordedEvent event = events.get(0);
+            assertEquals(index, event.getString("index"));
+            assertEquals("ja_tokenizer", event.getString("analyzer"));
+            assertEquals("NORMAL", event.getString("mode"));
+            assertEquals(text.length(), event.getInt("charCount"));
+            assertEquals(5, event.getInt("tokenCount"));
+            assertEquals(1, event.getInt("unknownWordCount"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_segmentationReused() throws Exception {
+        runner.ensureYellow();
+
+        final String index = "dataset";
+        final String type = "_doc";
+
+        final String indexSettings = "{\"index\":{\"analysis\":{" + "\"tokenizer\":{"//
+                + "\"kuromoji_reuse\":{\"type\":\"kuromoji_ipadic_neologd_tokenizer\",\"reuse_segmentation\":true}"
+                + "},"//
+                + "\"analyzer\":{"
+                + "\"ja_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\"},"
+                + "\"ja_baseform_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"kuromoji_ipadic_neologd_baseform\"]},"
+                + "\"ja_reading_analyzer\":{\"type\":\"custom\",\"tokenizer\":\"kuromoji_reuse\",\"filter\":[\"kuromoji_ipadic_neologd_readingform\"]}"
+                + "}"//
+                + "}}}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+
+        final XContentBuilder mappingBuilder = XContentFactory.jsonBuilder()//
+                .startObject()//
+                .startObject(type)//
+                .startObject("properties")//
+                .startObject("msg")//
+                .field("type", "text")//
+                .field("analyzer", "ja_analyzer")//
+                .startObject("fields")//
+                .startObject("baseform").field("type", "text").field("analyzer", "ja_baseform_analyzer").endObject()//
+                .startObject("reading").field("type", "text").field("analyzer", "ja_reading_analyzer").endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject()//
+                .endObject();
+        runner.createMapping(index, type, mappingBuilder);
+
+        final Path file = Files.createTempFile("kuromoji-", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(AnalyzeEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            final IndexResponse indexResponse1 = runner.insert(index, type, "1", "{\"msg\":\"東京スカイツリーに行った\"}");
+            assertEquals(RestStatus.CREATED, indexResponse1.status());
+
+            recording.stop();
+            recording.dump(file);
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> "org.codelibs.elasticsearch.kuromoji.ipadic.neologd.Analyze".equals(e.getEventType().getName()))
+                    .filter(e -> index.equals(e.getString("index"))).collect(Collectors.toList());
+            // segmented once per copy of the document, and replayed for the two sub-fields
+            final long segmented = events.stream().filter(e -> !e.getBoolean("segmentationReused")).count();
+            final long reused = events.stream().filter(e -> e.getBoolean("segmentationReused")).count();
+            assertTrue(segmented >= 1);
+            assertEquals(segmented * 2, reused);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}